@@ -4,9 +4,13 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.function.Supplier;
 
 public class ATM {
+    private static final String DEFAULT_TERMINAL_ID = "ATM-001";
+
     private final String currentUserId;
+    private final String terminalId = DEFAULT_TERMINAL_ID;
     private final Scanner scanner;
     private final NumberFormat currencyFormat;
     private final DatabaseManager dbManager;
@@ -17,6 +21,8 @@ public class ATM {
         this.dbManager = new DatabaseManager();
         this.currentUserId = "USER001"; // Default user
         dbManager.initializeDemoData(); // Initialize demo data in database
+        dbManager.startCheckClearing();
+        dbManager.startAuditSealing();
     }
 
     // Constructor for testing
@@ -30,7 +36,7 @@ public class ATM {
 
     public boolean authenticateWithPIN(String pin) {
         boolean isValid = dbManager.authenticateUser(currentUserId, hashPIN(pin));
-        dbManager.logPINActivity(currentUserId, isValid ? "Successful PIN authentication" : "Failed PIN authentication attempt");
+        dbManager.logPINActivity(currentUserId, terminalId, isValid ? PinEvent.AUTH_SUCCESS : PinEvent.AUTH_FAILURE);
         return isValid;
     }
 
@@ -39,68 +45,150 @@ public class ATM {
         return accounts.getOrDefault(accountType, 0.0);
     }
 
+    public double getAvailableBalance(String userId, String accountType) {
+        return dbManager.getAvailableBalance(userId, accountType);
+    }
+
     public void performTransfer(String sourceUserId, String sourceAccount, 
                               String destUserId, String destAccount, double amount) {
-        if (validateWithdrawal(sourceAccount, amount)) {
-            double sourceBalance = getBalance(sourceUserId, sourceAccount);
-            double destBalance = getBalance(destUserId, destAccount);
-            
-            dbManager.updateBalance(sourceUserId, sourceAccount, sourceBalance - amount);
-            dbManager.updateBalance(destUserId, destAccount, destBalance + amount);
-            dbManager.logTransaction(sourceUserId, "Transfer from " + sourceAccount + " to " + destAccount, amount);
+        performTransfer(sourceUserId, sourceAccount, destUserId, destAccount, amount, null);
+    }
+
+    public TransactionResult performTransfer(String sourceUserId, String sourceAccount,
+                                             String destUserId, String destAccount, double amount,
+                                             String idempotencyKey) {
+        String fingerprint = fingerprint("transfer", sourceUserId, sourceAccount, destUserId, destAccount, amount);
+        return dbManager.executeOnce(scopedKey(idempotencyKey), fingerprint, () -> {
+            // Checked before any debit so money never leaves for an account that cannot receive it
+            if (!dbManager.getAccounts(destUserId).containsKey(destAccount)) {
+                System.out.println("Recipient account not found.");
+                return TransactionResult.rejected();
+            }
+            AccountSnapshot updated = withdraw(sourceUserId, sourceAccount, amount,
+                () -> postTransfer(sourceUserId, sourceAccount, destUserId, destAccount, amount,
+                    "Transfer from " + sourceAccount + " to " + destAccount));
+            if (updated == null) {
+                return TransactionResult.rejected();
+            }
+            return TransactionResult.completed(generateConfirmationCode(), updated.getBalance(sourceAccount));
+        });
+    }
+
+    // Same-user transfers are applied as one version so readers never see half a transfer.
+    // Returns null, leaving both users unchanged, if the source account lacks the funds
+    // or the credit cannot be applied.
+    private AccountSnapshot postTransfer(String sourceUserId, String sourceAccount,
+                                         String destUserId, String destAccount, double amount, String description) {
+        if (sourceUserId.equals(destUserId)) {
+            Map<String, Double> deltas = new HashMap<>();
+            deltas.put(sourceAccount, -amount);
+            deltas.merge(destAccount, amount, Double::sum);
+            return dbManager.applyBalanceChanges(sourceUserId, deltas, description, amount);
         }
+        AccountSnapshot source = dbManager.applyBalanceChanges(sourceUserId,
+            Collections.singletonMap(sourceAccount, -amount), description, amount);
+        if (source == null) {
+            return null;
+        }
+        AccountSnapshot destination = dbManager.applyBalanceChanges(destUserId,
+            Collections.singletonMap(destAccount, amount), null, 0.0);
+        if (destination == null) {
+            dbManager.applyBalanceChanges(sourceUserId, Collections.singletonMap(sourceAccount, amount),
+                "Reversal of " + description, amount);
+            return null;
+        }
+        return source;
     }
 
     public boolean changePIN(String currentPIN, String newPIN) {
         if (!dbManager.authenticateUser(currentUserId, hashPIN(currentPIN))) {
-            dbManager.logPINActivity(currentUserId, "Failed PIN change - incorrect current PIN");
+            dbManager.logPINActivity(currentUserId, terminalId, PinEvent.CHANGE_FAILED_WRONG_PIN);
             return false;
         }
 
         if (!newPIN.matches("\\d{4}")) {
-            dbManager.logPINActivity(currentUserId, "Failed PIN change - invalid format");
+            dbManager.logPINActivity(currentUserId, terminalId, PinEvent.CHANGE_FAILED_FORMAT);
             return false;
         }
 
         dbManager.updatePIN(currentUserId, hashPIN(newPIN));
-        dbManager.logPINActivity(currentUserId, "Successful PIN change");
+        dbManager.logPINActivity(currentUserId, terminalId, PinEvent.CHANGE_SUCCESS);
         return true;
     }
 
     public void processCardlessTransaction(String type, String account, double amount, String code) {
+        processCardlessTransaction(type, account, amount, code, null);
+    }
+
+    /**
+     * Processes a cardless transaction at most once per idempotency key.
+     * A retry with the same key returns the original result, including its confirmation code.
+     */
+    public TransactionResult processCardlessTransaction(String type, String account, double amount,
+                                                        String code, String idempotencyKey) {
+        return dbManager.executeOnce(scopedKey(idempotencyKey), fingerprint("cardless " + type, account, amount, code),
+            () -> executeCardlessTransaction(type, account, amount, code));
+    }
+
+    private TransactionResult executeCardlessTransaction(String type, String account, double amount, String code) {
         System.out.println("Processing " + type + "...");
         try {
             Thread.sleep(1500);
-            if (type.equals("withdrawal") && !validateWithdrawal(account, amount)) {
-                return;
+            String description = "Cardless " + type + " (" + code + ")";
+            AccountSnapshot updated = type.equals("withdrawal")
+                ? withdraw(currentUserId, account, amount, () -> dbManager.applyBalanceChanges(currentUserId,
+                    Collections.singletonMap(account, -amount), description, amount))
+                : dbManager.applyBalanceChanges(currentUserId,
+                    Collections.singletonMap(account, amount), description, amount);
+            if (updated == null) {
+                return TransactionResult.rejected();
             }
-
-            double currentBalance = getBalance(currentUserId, account);
-            double newBalance = type.equals("withdrawal") ? 
-                              currentBalance - amount : 
-                              currentBalance + amount;
-            
-            dbManager.updateBalance(currentUserId, account, newBalance);
+            double newBalance = updated.getBalance(account);
             String confirmationCode = generateConfirmationCode();
             
             System.out.println("\nTransaction successful!");
             System.out.println("Confirmation code: " + confirmationCode);
             System.out.println(type.substring(0, 1).toUpperCase() + type.substring(1) + " code: " + code);
             System.out.println("New balance: " + currencyFormat.format(newBalance));
-            
-            dbManager.logTransaction(currentUserId, "Cardless " + type + " (" + code + ")", amount);
+            return TransactionResult.completed(confirmationCode, newBalance);
         } catch (InterruptedException e) {
             System.out.println("Process interrupted. Please try again.");
+            return TransactionResult.failed();
         }
     }
 
-    private boolean validateWithdrawal(String account, double amount) {
-        double balance = getBalance(currentUserId, account);
-        if (balance < amount) {
+    // Keys are scoped to the user so terminals cannot collide across accounts
+    private String scopedKey(String idempotencyKey) {
+        return idempotencyKey == null ? null : currentUserId + ":" + idempotencyKey;
+    }
+
+    // Describes a request so a retried key can be matched against the one it was first used for
+    private static String fingerprint(Object... fields) {
+        StringJoiner joiner = new StringJoiner("|");
+        for (Object field : fields) {
+            joiner.add(String.valueOf(field));
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Charges the withdrawal limits, then runs the posting, which checks funds
+     * atomically with the debit. The limits are given back if the posting is
+     * rejected. Returns the posted version, or null if the withdrawal was refused.
+     */
+    private AccountSnapshot withdraw(String userId, String account, double amount,
+                                     Supplier<AccountSnapshot> posting) {
+        long recordedAt = System.currentTimeMillis();
+        if (!dbManager.recordWithdrawal(userId, account, amount, recordedAt)) {
+            System.out.println("Withdrawal limit exceeded.");
+            return null;
+        }
+        AccountSnapshot updated = posting.get();
+        if (updated == null) {
+            dbManager.releaseWithdrawal(userId, account, amount, recordedAt);
             System.out.println("Insufficient funds.");
-            return false;
         }
-        return true;
+        return updated;
     }
 
     // Keeping utility methods unchanged
@@ -221,12 +309,20 @@ public class ATM {
         if (account == null) return;
         
         double amount = getPositiveDoubleInput("Enter amount to deposit: ");
-        double currentBalance = getBalance(currentUserId, account);
-        dbManager.updateBalance(currentUserId, account, currentBalance + amount);
-        
-        System.out.println("Deposit successful!");
-        System.out.println("New balance: " + currencyFormat.format(currentBalance + amount));
-        dbManager.logTransaction(currentUserId, "Cash Deposit to " + account, amount);
+        depositCash(account, amount, null);
+    }
+
+    /**
+     * Deposits cash at most once per idempotency key.
+     */
+    public TransactionResult depositCash(String account, double amount, String idempotencyKey) {
+        return dbManager.executeOnce(scopedKey(idempotencyKey), fingerprint("cash deposit", account, amount), () -> {
+            AccountSnapshot updated = dbManager.applyBalanceChanges(currentUserId,
+                Collections.singletonMap(account, amount), "Cash Deposit to " + account, amount);
+            System.out.println("Deposit successful!");
+            System.out.println("New balance: " + currencyFormat.format(updated.getBalance(account)));
+            return TransactionResult.completed(generateConfirmationCode(), updated.getBalance(account));
+        });
     }
 
     private void checkDeposit() {
@@ -234,17 +330,26 @@ public class ATM {
         if (account == null) return;
         
         double amount = getPositiveDoubleInput("Enter check amount: ");
-        System.out.println("Processing check...");
-        try {
-            Thread.sleep(2000);
-            double currentBalance = getBalance(currentUserId, account);
-            dbManager.updateBalance(currentUserId, account, currentBalance + amount);
-            System.out.println("Check deposit successful!");
-            System.out.println("New balance: " + currencyFormat.format(currentBalance + amount));
-            dbManager.logTransaction(currentUserId, "Check Deposit to " + account, amount);
-        } catch (InterruptedException e) {
-            System.out.println("Process interrupted. Please try again.");
-        }
+        depositCheck(account, amount, null);
+    }
+
+    /**
+     * Deposits a check at most once per idempotency key. The amount is held until the check clears.
+     */
+    public TransactionResult depositCheck(String account, double amount, String idempotencyKey) {
+        return dbManager.executeOnce(scopedKey(idempotencyKey), fingerprint("check deposit", account, amount), () -> {
+            if (dbManager.depositCheck(currentUserId, account, amount) == null) {
+                System.out.println("Check deposit failed.");
+                return TransactionResult.rejected();
+            }
+            double ledgerBalance = getBalance(currentUserId, account);
+            System.out.println("Check received. Funds are on hold until the check clears.");
+            System.out.println("Ledger balance: " + currencyFormat.format(ledgerBalance));
+            System.out.println("Available balance: "
+                + currencyFormat.format(getAvailableBalance(currentUserId, account)));
+            dbManager.logTransaction(currentUserId, "Check Deposit to " + account + " (on hold)", amount);
+            return TransactionResult.completed(generateConfirmationCode(), ledgerBalance);
+        });
     }
 
     private void cardlessDeposit() {
@@ -263,9 +368,7 @@ public class ATM {
         String account = selectAccount("withdraw from");
         if (account == null) return;
         
-        if (validateWithdrawal(account, amount)) {
-            performWithdrawal(account, amount);
-        }
+        performWithdrawal(account, amount);
     }
 
     private void customWithdraw() {
@@ -273,9 +376,7 @@ public class ATM {
         if (account == null) return;
         
         double amount = getPositiveDoubleInput("Enter withdrawal amount: ");
-        if (validateWithdrawal(account, amount)) {
-            performWithdrawal(account, amount);
-        }
+        performWithdrawal(account, amount);
     }
 
     private void cardlessWithdraw() {
@@ -287,14 +388,12 @@ public class ATM {
         if (account == null) return;
 
         double amount = getPositiveDoubleInput("Enter amount to withdraw: ");
-        if (validateWithdrawal(account, amount)) {
-            processCardlessTransaction("withdrawal", account, amount, withdrawalCode);
-        }
+        processCardlessTransaction("withdrawal", account, amount, withdrawalCode);
     }
 
     private void transferBetweenAccounts() {
         System.out.println("\nAvailable accounts:");
-        Map<String, Double> accounts = dbManager.getAccounts(currentUserId);
+        Map<String, Double> accounts = dbManager.getSnapshot(currentUserId).getBalances();
         for (Map.Entry<String, Double> entry : accounts.entrySet()) {
             System.out.println(entry.getKey() + ": " + currencyFormat.format(entry.getValue()));
         }
@@ -311,13 +410,10 @@ public class ATM {
         }
 
         double amount = getPositiveDoubleInput("Enter amount to transfer: ");
-        if (validateWithdrawal(sourceAccount, amount)) {
-            double sourceBalance = getBalance(currentUserId, sourceAccount);
-            double destBalance = getBalance(currentUserId, destAccount);
-            dbManager.updateBalance(currentUserId, sourceAccount, sourceBalance - amount);
-            dbManager.updateBalance(currentUserId, destAccount, destBalance + amount);
+        if (withdraw(currentUserId, sourceAccount, amount,
+                () -> postTransfer(currentUserId, sourceAccount, currentUserId, destAccount, amount,
+                    "Transfer from " + sourceAccount + " to " + destAccount)) != null) {
             System.out.println("Transfer successful!");
-            dbManager.logTransaction(currentUserId, "Transfer from " + sourceAccount + " to " + destAccount, amount);
         }
     }
 
@@ -342,13 +438,10 @@ public class ATM {
         if (destAccount == null) return;
 
         double amount = getPositiveDoubleInput("Enter amount to transfer: ");
-        if (validateWithdrawal(sourceAccount, amount)) {
-            double sourceBalance = getBalance(currentUserId, sourceAccount);
-            double destBalance = getBalance(recipientId, destAccount);
-            dbManager.updateBalance(currentUserId, sourceAccount, sourceBalance - amount);
-            dbManager.updateBalance(recipientId, destAccount, destBalance + amount);
+        if (withdraw(currentUserId, sourceAccount, amount,
+                () -> postTransfer(currentUserId, sourceAccount, recipientId, destAccount, amount,
+                    "Transfer to " + recipientId + "'s " + destAccount)) != null) {
             System.out.println("Transfer successful!");
-            dbManager.logTransaction(currentUserId, "Transfer to " + recipientId + "'s " + destAccount, amount);
         }
     }
 
@@ -366,13 +459,12 @@ public class ATM {
 
     private void showMiniStatement() {
         System.out.println("\n=== Mini Statement (Last 5) ===");
-        List<String> transactionHistory = dbManager.getTransactionHistory(currentUserId);
-        if (transactionHistory.isEmpty()) {
+        List<String> miniStatement = getMiniStatement();
+        if (miniStatement.isEmpty()) {
             System.out.println("No transactions to show.");
         } else {
-            int start = Math.max(transactionHistory.size() - 5, 0);
-            for (int i = start; i < transactionHistory.size(); i++) {
-                System.out.println(transactionHistory.get(i));
+            for (String transaction : miniStatement) {
+                System.out.println(transaction);
             }
         }
     }
@@ -394,7 +486,7 @@ public class ATM {
     }
 
     public List<String> getMiniStatement() {
-        List<String> history = dbManager.getTransactionHistory(currentUserId);
+        List<String> history = dbManager.getSnapshot(currentUserId).getRecentTransactions();
         if (history.size() <= 5) {
             return history;
         }
@@ -487,11 +579,21 @@ public class ATM {
     }
 
     private void performWithdrawal(String account, double amount) {
-        double currentBalance = getBalance(currentUserId, account);
-        dbManager.updateBalance(currentUserId, account, currentBalance - amount);
-        System.out.println("Withdrawal successful!");
-        System.out.println("Remaining balance: " + currencyFormat.format(currentBalance - amount));
-        dbManager.logTransaction(currentUserId, "Withdrawal from " + account, amount);
+        performWithdrawal(account, amount, null);
+    }
+
+    public TransactionResult performWithdrawal(String account, double amount, String idempotencyKey) {
+        return dbManager.executeOnce(scopedKey(idempotencyKey), fingerprint("withdrawal", account, amount), () -> {
+            AccountSnapshot updated = withdraw(currentUserId, account, amount,
+                () -> dbManager.applyBalanceChanges(currentUserId,
+                    Collections.singletonMap(account, -amount), "Withdrawal from " + account, amount));
+            if (updated == null) {
+                return TransactionResult.rejected();
+            }
+            System.out.println("Withdrawal successful!");
+            System.out.println("Remaining balance: " + currencyFormat.format(updated.getBalance(account)));
+            return TransactionResult.completed(generateConfirmationCode(), updated.getBalance(account));
+        });
     }
 
     private boolean authenticateUser() {
@@ -512,9 +614,14 @@ public class ATM {
 
     private void showBalance() {
         System.out.println("\n=== Account Balances ===");
-        Map<String, Double> accounts = dbManager.getAccounts(currentUserId);
-        for (Map.Entry<String, Double> account : accounts.entrySet()) {
+        AccountSnapshot snapshot = dbManager.getSnapshot(currentUserId);
+        for (Map.Entry<String, Double> account : snapshot.getBalances().entrySet()) {
             System.out.println(account.getKey() + ": " + currencyFormat.format(account.getValue()));
+            double held = snapshot.getHeldAmount(account.getKey());
+            if (held > 0) {
+                System.out.println("  Available: " + currencyFormat.format(account.getValue() - held)
+                    + " (" + currencyFormat.format(held) + " on hold)");
+            }
         }
     }
 
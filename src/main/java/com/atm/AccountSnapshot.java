@@ -0,0 +1,122 @@
+package com.atm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time view of one user's balances, check holds and most
+ * recent transactions. Every write produces a new version, so a reader holding
+ * a snapshot always sees values that were current together.
+ */
+public final class AccountSnapshot {
+    public static final int RECENT_TRANSACTION_LIMIT = 10;
+
+    private final String userId;
+    private final long version;
+    private final Map<String, Double> balances;
+    private final Map<String, Double> held;
+    private final List<String> recentTransactions;
+
+    private AccountSnapshot(String userId, long version, Map<String, Double> balances,
+                            Map<String, Double> held, List<String> recentTransactions) {
+        this.userId = userId;
+        this.version = version;
+        this.balances = Collections.unmodifiableMap(balances);
+        this.held = Collections.unmodifiableMap(held);
+        this.recentTransactions = Collections.unmodifiableList(recentTransactions);
+    }
+
+    public static AccountSnapshot initial(String userId, Map<String, Double> balances) {
+        return new AccountSnapshot(userId, 1, new HashMap<>(balances), new HashMap<>(), new ArrayList<>());
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Ledger balances by account type
+     */
+    public Map<String, Double> getBalances() {
+        return balances;
+    }
+
+    public double getBalance(String accountType) {
+        return balances.getOrDefault(accountType, 0.0);
+    }
+
+    public double getHeldAmount(String accountType) {
+        return held.getOrDefault(accountType, 0.0);
+    }
+
+    public double getAvailableBalance(String accountType) {
+        return getBalance(accountType) - getHeldAmount(accountType);
+    }
+
+    /**
+     * The latest transactions, oldest first, up to RECENT_TRANSACTION_LIMIT entries
+     */
+    public List<String> getRecentTransactions() {
+        return recentTransactions;
+    }
+
+    AccountSnapshot withBalanceChanges(Map<String, Double> deltas, String transaction) {
+        Map<String, Double> newBalances = new HashMap<>(balances);
+        for (Map.Entry<String, Double> delta : deltas.entrySet()) {
+            newBalances.merge(delta.getKey(), delta.getValue(), Double::sum);
+        }
+        return new AccountSnapshot(userId, version + 1, newBalances, held, appendRecent(transaction));
+    }
+
+    AccountSnapshot withPostings(List<Posting> postings, List<String> transactions) {
+        Map<String, Double> newBalances = new HashMap<>(balances);
+        for (Posting posting : postings) {
+            newBalances.merge(posting.getAccountType(), posting.getDelta(), Double::sum);
+        }
+        List<String> recent = recentTransactions;
+        for (String transaction : transactions) {
+            recent = appendRecent(recent, transaction);
+        }
+        return new AccountSnapshot(userId, version + 1, newBalances, held, recent);
+    }
+
+    AccountSnapshot withBalance(String accountType, double newBalance) {
+        Map<String, Double> newBalances = new HashMap<>(balances);
+        newBalances.put(accountType, newBalance);
+        return new AccountSnapshot(userId, version + 1, newBalances, held, recentTransactions);
+    }
+
+    AccountSnapshot withHoldChange(String accountType, double ledgerDelta, double heldDelta, String transaction) {
+        Map<String, Double> newBalances = new HashMap<>(balances);
+        newBalances.merge(accountType, ledgerDelta, Double::sum);
+        Map<String, Double> newHeld = new HashMap<>(held);
+        newHeld.merge(accountType, heldDelta, Double::sum);
+        return new AccountSnapshot(userId, version + 1, newBalances, newHeld, appendRecent(transaction));
+    }
+
+    AccountSnapshot withTransaction(String transaction) {
+        return new AccountSnapshot(userId, version + 1, balances, held, appendRecent(transaction));
+    }
+
+    private List<String> appendRecent(String transaction) {
+        return appendRecent(recentTransactions, transaction);
+    }
+
+    private static List<String> appendRecent(List<String> current, String transaction) {
+        if (transaction == null) {
+            return current;
+        }
+        int keep = Math.min(current.size(), RECENT_TRANSACTION_LIMIT - 1);
+        List<String> recent = new ArrayList<>(keep + 1);
+        recent.addAll(current.subList(current.size() - keep, current.size()));
+        recent.add(transaction);
+        return recent;
+    }
+}
@@ -0,0 +1,133 @@
+package com.atm;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Posts interest and fees to every account in parallel.
+ * Users are split into contiguous chunks that worker threads process
+ * independently. Each user's postings and transaction records are applied as
+ * one atomic version, so the run is safe alongside live ATM sessions.
+ */
+public class BulkPostingEngine {
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    private final InMemoryDatabase db;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final AtomicLong processedUsers = new AtomicLong();
+    private volatile long totalUsers;
+
+    public static final class Report {
+        private final long users;
+        private final long postings;
+        private final double interestPosted;
+        private final double feesPosted;
+        private final long elapsedMillis;
+
+        Report(long users, long postings, double interestPosted, double feesPosted, long elapsedMillis) {
+            this.users = users;
+            this.postings = postings;
+            this.interestPosted = interestPosted;
+            this.feesPosted = feesPosted;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getUsers() {
+            return users;
+        }
+
+        public long getPostings() {
+            return postings;
+        }
+
+        public double getInterestPosted() {
+            return interestPosted;
+        }
+
+        public double getFeesPosted() {
+            return feesPosted;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getUsersPerSecond() {
+            return users * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Posted %d entries for %d users (interest %.2f, fees %.2f) in %d ms, %.0f users/s",
+                postings, users, interestPosted, feesPosted, elapsedMillis, getUsersPerSecond());
+        }
+    }
+
+    public BulkPostingEngine(InMemoryDatabase db) {
+        this(db, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public BulkPostingEngine(InMemoryDatabase db, ForkJoinPool pool, int chunkSize) {
+        this.db = db;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Applies the rate table to every user's accounts and returns a summary of the run.
+     * Runs are exclusive: a second caller waits for the current run to finish, so
+     * progress always describes a single run and no cycle is posted twice at once.
+     */
+    public synchronized Report run(RateTable rates) {
+        long start = System.currentTimeMillis();
+        List<String> userIds = db.getUserIds();
+        totalUsers = userIds.size();
+        processedUsers.set(0);
+
+        AtomicLong postings = new AtomicLong();
+        DoubleAdder interest = new DoubleAdder();
+        DoubleAdder fees = new DoubleAdder();
+        int chunks = (userIds.size() + chunkSize - 1) / chunkSize;
+
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * chunkSize;
+            int to = Math.min(from + chunkSize, userIds.size());
+            long chunkPostings = 0;
+            double chunkInterest = 0;
+            double chunkFees = 0;
+            for (int i = from; i < to; i++) {
+                for (Posting posting : db.applyPostings(userIds.get(i), rates::postingsFor)) {
+                    chunkPostings++;
+                    if (posting.getDelta() > 0) {
+                        chunkInterest += posting.getDelta();
+                    } else {
+                        chunkFees -= posting.getDelta();
+                    }
+                }
+            }
+            postings.addAndGet(chunkPostings);
+            interest.add(chunkInterest);
+            fees.add(chunkFees);
+            processedUsers.addAndGet(to - from);
+        })).join();
+
+        return new Report(userIds.size(), postings.get(), interest.sum(), fees.sum(),
+            System.currentTimeMillis() - start);
+    }
+
+    public long getProcessedUsers() {
+        return processedUsers.get();
+    }
+
+    /**
+     * Fraction of users processed by the current or last run, between 0 and 1
+     */
+    public double getProgress() {
+        long total = totalUsers;
+        return total == 0 ? 1.0 : (double) processedUsers.get() / total;
+    }
+}
@@ -0,0 +1,86 @@
+package com.atm;
+
+/**
+ * A change published by the data layer. Instances are preallocated ring slots
+ * and subscriber buffers that are overwritten in place, so handlers must copy
+ * any values they want to keep.
+ */
+public class ChangeEvent {
+    public enum Type {
+        BALANCE_UPDATED,
+        PIN_UPDATED,
+        TRANSACTION_LOGGED
+    }
+
+    private long sequence;
+    private Type type;
+    private String userId;
+    private String accountType;
+    private String detail;
+    private double amount;
+    private long version;
+    private long timestamp;
+
+    void set(long sequence, Type type, String userId, String accountType, String detail,
+             double amount, long version, long timestamp) {
+        this.sequence = sequence;
+        this.type = type;
+        this.userId = userId;
+        this.accountType = accountType;
+        this.detail = detail;
+        this.amount = amount;
+        this.version = version;
+        this.timestamp = timestamp;
+    }
+
+    void copyFrom(ChangeEvent other) {
+        set(other.sequence, other.type, other.userId, other.accountType, other.detail,
+            other.amount, other.version, other.timestamp);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * The account affected by a balance update, otherwise null.
+     */
+    public String getAccountType() {
+        return accountType;
+    }
+
+    /**
+     * The transaction type for a logged transaction, otherwise null.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * The new balance for a balance update or the amount of a logged transaction.
+     */
+    public double getAmount() {
+        return amount;
+    }
+
+    /**
+     * The version of the user's AccountSnapshot that this change produced, or 0
+     * for changes outside the snapshot such as PIN updates. Events for one user
+     * can arrive out of version order when writers race; the highest version wins.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
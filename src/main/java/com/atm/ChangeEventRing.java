@@ -0,0 +1,160 @@
+package com.atm;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated ring buffer of change events with independent subscribers.
+ * Writers claim a sequence and fill the matching slot in place, so publishing
+ * never allocates and never waits for subscribers. Each subscriber tracks its
+ * own sequence; one that falls more than a full ring behind is told how many
+ * events it missed and resumes from the oldest event still available.
+ * Producers are never held back, so missed events are lost for good: a lapped
+ * subscriber has to catch up from the accounts themselves by passing the
+ * snapshot versions it last saw to InMemoryDatabase.getSnapshotsChangedSince.
+ */
+public class ChangeEventRing {
+    private static final long UNPUBLISHED = -1L;
+
+    private final ChangeEvent[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    public interface Handler {
+        void onEvent(ChangeEvent event);
+
+        /**
+         * Called when the subscriber fell behind and events were overwritten
+         * before it could read them. The events are gone; state derived from
+         * them must be rebuilt from InMemoryDatabase.getSnapshotsChangedSince.
+         */
+        default void onMissed(long count) {
+        }
+    }
+
+    public ChangeEventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.slots = new ChangeEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new ChangeEvent();
+            published.set(i, UNPUBLISHED);
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Sequence that the next published event will receive.
+     */
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public void publish(ChangeEvent.Type type, String userId, String accountType, String detail, double amount) {
+        publish(type, userId, accountType, detail, amount, 0L);
+    }
+
+    public void publish(ChangeEvent.Type type, String userId, String accountType, String detail,
+                        double amount, long version) {
+        long sequence = cursor.getAndIncrement();
+        int index = (int) (sequence & mask);
+        published.set(index, UNPUBLISHED);
+        VarHandle.storeStoreFence();
+        slots[index].set(sequence, type, userId, accountType, detail, amount, version, System.currentTimeMillis());
+        published.set(index, sequence);
+    }
+
+    /**
+     * Registers a subscriber that receives events published from now on.
+     */
+    public Subscriber subscribe() {
+        Subscriber subscriber = new Subscriber(cursor.get());
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * Largest number of unread events across all subscribers.
+     */
+    public long getMaxLag() {
+        long max = 0;
+        for (Subscriber subscriber : subscribers) {
+            max = Math.max(max, subscriber.getLag());
+        }
+        return max;
+    }
+
+    /**
+     * Reading position of one consumer. A subscriber must be polled from a single thread.
+     */
+    public final class Subscriber {
+        private final ChangeEvent buffer = new ChangeEvent();
+        private volatile long next;
+        private long missed;
+
+        private Subscriber(long next) {
+            this.next = next;
+        }
+
+        /**
+         * Delivers up to maxEvents published events to the handler and returns
+         * how many were delivered.
+         */
+        public int poll(Handler handler, int maxEvents) {
+            long sequence = next;
+            int delivered = 0;
+            while (delivered < maxEvents) {
+                int index = (int) (sequence & mask);
+                long available = published.get(index);
+                if (available == sequence) {
+                    buffer.copyFrom(slots[index]);
+                    VarHandle.loadLoadFence();
+                    if (published.get(index) == sequence) {
+                        next = ++sequence;
+                        handler.onEvent(buffer);
+                        delivered++;
+                        continue;
+                    }
+                } else if (available < sequence) {
+                    break;
+                }
+                long oldest = Math.max(sequence + 1, cursor.get() - slots.length);
+                missed += oldest - sequence;
+                handler.onMissed(oldest - sequence);
+                next = sequence = oldest;
+            }
+            return delivered;
+        }
+
+        public long getNextSequence() {
+            return next;
+        }
+
+        /**
+         * Number of published or claimed events this subscriber has not read yet.
+         * For monitoring only; producers do not wait on it.
+         */
+        public long getLag() {
+            return Math.max(0, cursor.get() - next);
+        }
+
+        public long getMissedCount() {
+            return missed;
+        }
+    }
+}
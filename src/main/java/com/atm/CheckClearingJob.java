@@ -0,0 +1,91 @@
+package com.atm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Scheduled job that clears pending check holds in batches.
+ * Holds older than the hold period are drained from the queue, checked
+ * against the verifier in parallel, and settled with one database call per batch.
+ */
+public class CheckClearingJob {
+    public static final long DEFAULT_HOLD_MILLIS = TimeUnit.DAYS.toMillis(1);
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final InMemoryDatabase db;
+    private final Predicate<CheckHold> verifier;
+    private final long holdMillis;
+    private final int batchSize;
+    private ScheduledExecutorService scheduler;
+
+    public static final class Result {
+        private final int cleared;
+        private final int rejected;
+
+        Result(int cleared, int rejected) {
+            this.cleared = cleared;
+            this.rejected = rejected;
+        }
+
+        public int getCleared() {
+            return cleared;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+    }
+
+    public CheckClearingJob(InMemoryDatabase db) {
+        this(db, hold -> true, DEFAULT_HOLD_MILLIS, DEFAULT_BATCH_SIZE);
+    }
+
+    public CheckClearingJob(InMemoryDatabase db, Predicate<CheckHold> verifier, long holdMillis, int batchSize) {
+        this.db = db;
+        this.verifier = verifier;
+        this.holdMillis = holdMillis;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Clears every hold that has reached the end of its hold period.
+     */
+    public Result runOnce() {
+        long cutoff = System.currentTimeMillis() - holdMillis;
+        int cleared = 0;
+        int rejected = 0;
+        List<CheckHold> batch;
+        while (!(batch = db.takeClearableHolds(cutoff, batchSize)).isEmpty()) {
+            Map<Boolean, List<CheckHold>> decisions = batch.parallelStream()
+                .collect(Collectors.partitioningBy(verifier));
+            db.settleHolds(decisions.get(true), decisions.get(false));
+            cleared += decisions.get(true).size();
+            rejected += decisions.get(false).size();
+        }
+        return new Result(cleared, rejected);
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "check-clearing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runOnce, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
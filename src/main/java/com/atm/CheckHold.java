@@ -0,0 +1,40 @@
+package com.atm;
+
+/**
+ * A deposited check whose funds are held until the check clears
+ */
+public class CheckHold {
+    private final long id;
+    private final String userId;
+    private final String accountType;
+    private final double amount;
+    private final long depositedAt;
+
+    public CheckHold(long id, String userId, String accountType, double amount, long depositedAt) {
+        this.id = id;
+        this.userId = userId;
+        this.accountType = accountType;
+        this.amount = amount;
+        this.depositedAt = depositedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getAccountType() {
+        return accountType;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public long getDepositedAt() {
+        return depositedAt;
+    }
+}
@@ -2,6 +2,7 @@ package com.atm;
 
 import java.util.Map;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * DatabaseManager that delegates to InMemoryDatabase
@@ -9,9 +10,19 @@ import java.util.List;
  */
 public class DatabaseManager {
     private static final InMemoryDatabase db;
+    private static volatile WithdrawalLimits withdrawalLimits;
+    private static final CheckClearingJob checkClearingJob;
+    private static final BulkPostingEngine bulkPostingEngine;
+    private static final IdempotencyIndex idempotencyIndex;
+    private static final long CHECK_CLEARING_PERIOD_MILLIS = 60_000;
+    private static final long AUDIT_SEALING_PERIOD_MILLIS = 5_000;
 
     static {
         db = new InMemoryDatabase();
+        withdrawalLimits = new WithdrawalLimits();
+        checkClearingJob = new CheckClearingJob(db);
+        bulkPostingEngine = new BulkPostingEngine(db);
+        idempotencyIndex = new IdempotencyIndex();
     }
     
     public boolean authenticateUser(String userId, String pinHash) {
@@ -26,10 +37,95 @@ public class DatabaseManager {
         return db.getAccounts(userId);
     }
 
+    /**
+     * Overwrites a balance; use applyBalanceChanges for changes computed from the current balance.
+     */
     public void updateBalance(String userId, String accountType, double newBalance) {
         db.updateBalance(userId, accountType, newBalance);
     }
 
+    public AccountSnapshot getSnapshot(String userId) {
+        return db.getSnapshot(userId);
+    }
+
+    /**
+     * Applies balance deltas atomically; returns null if a debit exceeds the available balance.
+     */
+    public AccountSnapshot applyBalanceChanges(String userId, Map<String, Double> deltas,
+                                               String transactionType, double amount) {
+        return db.applyBalanceChanges(userId, deltas, transactionType, amount);
+    }
+
+    public CheckHold depositCheck(String userId, String accountType, double amount) {
+        return db.placeCheckHold(userId, accountType, amount);
+    }
+
+    public double getAvailableBalance(String userId, String accountType) {
+        return db.getAvailableBalance(userId, accountType);
+    }
+
+    public double getHeldAmount(String userId, String accountType) {
+        return db.getHeldAmount(userId, accountType);
+    }
+
+    public void startCheckClearing() {
+        checkClearingJob.start(CHECK_CLEARING_PERIOD_MILLIS);
+    }
+
+    public BulkPostingEngine.Report postInterestAndFees(RateTable rates) {
+        return bulkPostingEngine.run(rates);
+    }
+
+    public double getBulkPostingProgress() {
+        return bulkPostingEngine.getProgress();
+    }
+
+    public void startAuditSealing() {
+        db.getAuditLog().start(AUDIT_SEALING_PERIOD_MILLIS);
+    }
+
+    public TamperEvidentLog.VerificationReport verifyAuditLog() {
+        db.getAuditLog().sealPending();
+        return db.getAuditLog().verify();
+    }
+
+    public TamperEvidentLog.Proof proveTransaction(String userId, int index) {
+        return db.getAuditLog().prove(InMemoryDatabase.transactionLogId(userId), index);
+    }
+
+    /**
+     * Runs a mutating operation at most once per idempotency key; a null key always runs it.
+     * The fingerprint describes the request so a key reused for a different one is refused.
+     */
+    public TransactionResult executeOnce(String idempotencyKey, String fingerprint,
+                                         Supplier<TransactionResult> operation) {
+        return idempotencyIndex.execute(idempotencyKey, fingerprint, operation);
+    }
+
+    public IdempotencyIndex getIdempotencyIndex() {
+        return idempotencyIndex;
+    }
+
+    public boolean recordWithdrawal(String userId, String accountType, double amount, long nowMillis) {
+        return withdrawalLimits.tryRecord(userId, accountType, amount, nowMillis);
+    }
+
+    /**
+     * Gives back a withdrawal recorded at recordedAtMillis that was not carried out
+     */
+    public void releaseWithdrawal(String userId, String accountType, double amount, long recordedAtMillis) {
+        withdrawalLimits.release(userId, accountType, amount, recordedAtMillis);
+    }
+
+    public WithdrawalLimits getWithdrawalLimits() {
+        return withdrawalLimits;
+    }
+
+    // Replaces the shared limits so tests start from a clean window
+    static void useWithdrawalLimits(WithdrawalLimits limits) {
+        withdrawalLimits = limits;
+    }
+
     public void logTransaction(String userId, String type, double amount) {
         db.logTransaction(userId, type, amount);
     }
@@ -38,6 +134,29 @@ public class DatabaseManager {
         db.logPINActivity(userId, activity);
     }
 
+    public void logPINActivity(String userId, String terminalId, PinEvent event) {
+        db.logPINActivity(userId, terminalId, event);
+    }
+
+    public PinAuditStore getPinAuditStore() {
+        return db.getPinAuditStore();
+    }
+
+    public ChangeEventRing.Subscriber subscribeToChanges() {
+        return db.getChangeEvents().subscribe();
+    }
+
+    public void unsubscribeFromChanges(ChangeEventRing.Subscriber subscriber) {
+        db.getChangeEvents().unsubscribe(subscriber);
+    }
+
+    /**
+     * Snapshots newer than the versions a change subscriber has seen; how a lapped subscriber catches up
+     */
+    public List<AccountSnapshot> getSnapshotsChangedSince(Map<String, Long> seenVersions) {
+        return db.getSnapshotsChangedSince(seenVersions);
+    }
+
     public void initializeDemoData() {
         // In-memory database already initialized with demo data
     }
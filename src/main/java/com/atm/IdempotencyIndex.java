@@ -0,0 +1,190 @@
+package com.atm;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of each idempotency key so retried requests return the
+ * original result instead of being applied again.
+ * Keys are kept in two generations that rotate once the window has elapsed, or
+ * early once the current generation holds maxEntriesPerGeneration keys, so
+ * memory stays bounded at two generations without ever turning requests away.
+ * Rotation drops only the older generation's finished requests; operations still
+ * running are carried into the new generation. Early rotations shorten how long
+ * finished keys are remembered, so they are counted and the span of the last
+ * completed generation is exposed for monitoring. Each key also remembers a
+ * fingerprint of the request it was first used for, so reusing a key for a
+ * different request is refused rather than answered with the other request's
+ * result. Lookups are two hash map reads.
+ */
+public class IdempotencyIndex {
+    public static final long DEFAULT_WINDOW_MILLIS = TimeUnit.HOURS.toMillis(24);
+    public static final int DEFAULT_MAX_ENTRIES_PER_GENERATION = 500_000;
+
+    private final long windowMillis;
+    private final int maxEntriesPerGeneration;
+    private volatile Map<String, Request> current = new ConcurrentHashMap<>();
+    private volatile Map<String, Request> previous = new ConcurrentHashMap<>();
+    private volatile long generationStart = System.currentTimeMillis();
+    private volatile long lastGenerationMillis;
+    private final AtomicLong earlyRotations = new AtomicLong();
+
+    // The eventual result of the first request made with a key
+    private static final class Request extends CompletableFuture<TransactionResult> {
+        final String fingerprint;
+
+        Request(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    public IdempotencyIndex() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_ENTRIES_PER_GENERATION);
+    }
+
+    public IdempotencyIndex(long windowMillis, int maxEntriesPerGeneration) {
+        this.windowMillis = windowMillis;
+        this.maxEntriesPerGeneration = maxEntriesPerGeneration;
+        this.lastGenerationMillis = windowMillis;
+    }
+
+    /**
+     * Runs the operation unless the key has been seen, in which case the original
+     * result is returned; a duplicate that arrives while the original is still
+     * running waits for it. Retryable results and exceptions are not remembered.
+     * A null key always runs the operation. The fingerprint identifies the
+     * request (operation, accounts, amount); a key already used with a different
+     * fingerprint throws IllegalArgumentException.
+     */
+    public TransactionResult execute(String key, String fingerprint, Supplier<TransactionResult> operation) {
+        if (key == null) {
+            return operation.get();
+        }
+        Objects.requireNonNull(fingerprint, "fingerprint");
+        rotateIfNeeded(System.currentTimeMillis());
+
+        Request existing = lookup(key);
+        if (existing == null) {
+            Request pending = new Request(fingerprint);
+            existing = current.putIfAbsent(key, pending);
+            if (existing == null) {
+                if (current.size() >= maxEntriesPerGeneration) {
+                    rotateEarly(System.currentTimeMillis());
+                }
+                // A rotation since the lookup may have moved this request, or one that
+                // claimed the key first, into the previous generation
+                Request owner = previous.get(key);
+                if (owner == null || owner == pending) {
+                    return run(key, pending, operation);
+                }
+                forget(key, pending);
+                existing = owner;
+            }
+        }
+        if (!existing.fingerprint.equals(fingerprint)) {
+            throw new IllegalArgumentException("Idempotency key " + key + " was already used for a different request");
+        }
+        return awaitOriginal(key, existing);
+    }
+
+    // Failures are normally forgotten before they complete, but one carried across a
+    // rotation at that moment can linger; drop it so the next retry runs again
+    private TransactionResult awaitOriginal(String key, Request original) {
+        TransactionResult result;
+        try {
+            result = original.join();
+        } catch (CompletionException e) {
+            forget(key, original);
+            throw e;
+        }
+        if (result.isRetryable()) {
+            forget(key, original);
+        }
+        return result;
+    }
+
+    private Request lookup(String key) {
+        Request existing = current.get(key);
+        return existing != null ? existing : previous.get(key);
+    }
+
+    private TransactionResult run(String key, Request pending,
+                                  Supplier<TransactionResult> operation) {
+        TransactionResult result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            forget(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        if (result.isRetryable()) {
+            forget(key, pending);
+        }
+        pending.complete(result);
+        return result;
+    }
+
+    private void forget(String key, Request pending) {
+        current.remove(key, pending);
+        previous.remove(key, pending);
+    }
+
+    private void rotateIfNeeded(long nowMillis) {
+        if (nowMillis - generationStart < windowMillis) {
+            return;
+        }
+        synchronized (this) {
+            if (nowMillis - generationStart >= windowMillis) {
+                rotate(nowMillis);
+            }
+        }
+    }
+
+    private synchronized void rotateEarly(long nowMillis) {
+        if (current.size() >= maxEntriesPerGeneration) {
+            earlyRotations.incrementAndGet();
+            rotate(nowMillis);
+        }
+    }
+
+    // Callers hold the lock
+    private void rotate(long nowMillis) {
+        Map<String, Request> next = new ConcurrentHashMap<>();
+        previous.forEach((key, request) -> {
+            if (!request.isDone()) {
+                next.put(key, request);
+            }
+        });
+        previous = current;
+        current = next;
+        lastGenerationMillis = nowMillis - generationStart;
+        generationStart = nowMillis;
+    }
+
+    public int size() {
+        return current.size() + previous.size();
+    }
+
+    /**
+     * Number of rotations forced by the size bound before the window elapsed
+     */
+    public long getEarlyRotationCount() {
+        return earlyRotations.get();
+    }
+
+    /**
+     * How long the most recently rotated generation was current. Finished keys
+     * are remembered for one to two generations, so a value well below the
+     * window means the size bound is cutting retention short.
+     */
+    public long getLastGenerationMillis() {
+        return lastGenerationMillis;
+    }
+}
@@ -5,15 +5,24 @@ import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * In-memory database for testing purposes
  */
 public class InMemoryDatabase {
     private final Map<String, String> users = new HashMap<>();
-    private final Map<String, Map<String, Double>> accounts = new HashMap<>();
-    private final Map<String, List<String>> transactions = new HashMap<>();
-    private final Map<String, List<String>> pinActivities = new HashMap<>();
+    private final Map<String, AccountSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Queue<CheckHold> pendingHolds = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextHoldId = new AtomicLong(1);
+    private final Map<String, List<String>> transactions = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> pinActivities = new ConcurrentHashMap<>();
+    private final TamperEvidentLog auditLog = new TamperEvidentLog();
+    private final PinAuditStore pinAuditStore = new PinAuditStore();
+    private final ChangeEventRing changeEvents = new ChangeEventRing(1 << 16);
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public InMemoryDatabase() {
@@ -27,40 +36,312 @@ public class InMemoryDatabase {
     public void updatePIN(String userId, String newPinHash) {
         if (users.containsKey(userId)) {
             users.put(userId, newPinHash);
+            changeEvents.publish(ChangeEvent.Type.PIN_UPDATED, userId, null, null, 0.0);
         }
     }
 
     public Map<String, Double> getAccounts(String userId) {
-        return accounts.getOrDefault(userId, new HashMap<>());
+        AccountSnapshot snapshot = snapshots.get(userId);
+        return snapshot == null ? new HashMap<>() : snapshot.getBalances();
     }
 
+    /**
+     * Returns the current version of a user's balances, holds and recent
+     * transactions, or null if the user has no accounts. Readers never lock;
+     * writers publish a new version instead of changing the old one.
+     */
+    public AccountSnapshot getSnapshot(String userId) {
+        return snapshots.get(userId);
+    }
+
+    /**
+     * Overwrites a balance. Balance changes made concurrently, such as a returned
+     * check reversal from the clearing job, are lost; use applyBalanceChanges
+     * for anything computed from the current balance.
+     */
     public void updateBalance(String userId, String accountType, double newBalance) {
-        if (accounts.containsKey(userId)) {
-            accounts.get(userId).put(accountType, newBalance);
+        AccountSnapshot next = snapshots.computeIfPresent(userId,
+            (id, current) -> current.withBalance(accountType, newBalance));
+        if (next != null) {
+            publishBalance(next, accountType);
+        }
+    }
+
+    /**
+     * Adds the given deltas to a user's balances and, when transactionType is not
+     * null, logs the transaction, all as one new version. Debits are checked
+     * against the available balance of that same version, so no concurrent
+     * change can land between the check and the update. Returns the new version,
+     * or null if the user has no accounts or a debit exceeds the available balance.
+     */
+    public AccountSnapshot applyBalanceChanges(String userId, Map<String, Double> deltas,
+                                               String transactionType, double amount) {
+        AccountSnapshot[] applied = new AccountSnapshot[1];
+        snapshots.computeIfPresent(userId, (id, current) -> {
+            for (Map.Entry<String, Double> delta : deltas.entrySet()) {
+                if (delta.getValue() < 0 && current.getAvailableBalance(delta.getKey()) < -delta.getValue()) {
+                    return current;
+                }
+            }
+            String entry = transactionType == null ? null : formatTransaction(transactionType, amount);
+            if (entry != null) {
+                appendTransaction(id, entry);
+            }
+            applied[0] = current.withBalanceChanges(deltas, entry);
+            return applied[0];
+        });
+        AccountSnapshot next = applied[0];
+        if (next != null) {
+            for (String accountType : deltas.keySet()) {
+                publishBalance(next, accountType);
+            }
+            if (transactionType != null) {
+                publishTransaction(userId, transactionType, amount, next.getVersion());
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Computes postings from the user's current version and applies them, with
+     * their transaction records, as one new version. Returns the postings that
+     * were applied, or an empty list if the user has no accounts.
+     */
+    public List<Posting> applyPostings(String userId, Function<AccountSnapshot, List<Posting>> postingsFor) {
+        List<List<Posting>> applied = new ArrayList<>(1);
+        AccountSnapshot[] posted = new AccountSnapshot[1];
+        snapshots.computeIfPresent(userId, (id, current) -> {
+            List<Posting> postings = postingsFor.apply(current);
+            applied.add(postings);
+            if (postings.isEmpty()) {
+                return current;
+            }
+            List<String> entries = new ArrayList<>(postings.size());
+            for (Posting posting : postings) {
+                entries.add(formatTransaction(posting.getTransactionType(), Math.abs(posting.getDelta())));
+            }
+            appendTransactions(id, entries);
+            posted[0] = current.withPostings(postings, entries);
+            return posted[0];
+        });
+        if (posted[0] == null) {
+            return applied.isEmpty() ? Collections.emptyList() : applied.get(0);
+        }
+        List<Posting> postings = applied.get(0);
+        for (Posting posting : postings) {
+            publishBalance(posted[0], posting.getAccountType());
+        }
+        for (Posting posting : postings) {
+            publishTransaction(userId, posting.getTransactionType(), Math.abs(posting.getDelta()),
+                posted[0].getVersion());
+        }
+        return postings;
+    }
+
+    public List<String> getUserIds() {
+        return new ArrayList<>(snapshots.keySet());
+    }
+
+    /**
+     * Returns the current snapshot of every user whose version is newer than the
+     * one given in seenVersions, including users missing from it. A change event
+     * subscriber that was lapped calls this with the highest version it saw per
+     * user to recover the state it missed. Transactions older than the snapshot's
+     * recent list are read from getTransactionHistory.
+     */
+    public List<AccountSnapshot> getSnapshotsChangedSince(Map<String, Long> seenVersions) {
+        List<AccountSnapshot> changed = new ArrayList<>();
+        for (AccountSnapshot snapshot : snapshots.values()) {
+            if (snapshot.getVersion() > seenVersions.getOrDefault(snapshot.getUserId(), 0L)) {
+                changed.add(snapshot);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Credits a check to the ledger balance and holds the amount until it clears.
+     * Returns null if the account does not exist.
+     */
+    public CheckHold placeCheckHold(String userId, String accountType, double amount) {
+        AccountSnapshot snapshot = snapshots.get(userId);
+        if (snapshot == null || !snapshot.getBalances().containsKey(accountType)) {
+            return null;
+        }
+        AccountSnapshot next = snapshots.computeIfPresent(userId,
+            (id, current) -> current.withHoldChange(accountType, amount, amount, null));
+        if (next != null) {
+            publishBalance(next, accountType);
+        }
+
+        CheckHold hold = new CheckHold(nextHoldId.getAndIncrement(), userId, accountType, amount,
+            System.currentTimeMillis());
+        pendingHolds.add(hold);
+        return hold;
+    }
+
+    public double getHeldAmount(String userId, String accountType) {
+        AccountSnapshot snapshot = snapshots.get(userId);
+        return snapshot == null ? 0.0 : snapshot.getHeldAmount(accountType);
+    }
+
+    public double getAvailableBalance(String userId, String accountType) {
+        AccountSnapshot snapshot = snapshots.get(userId);
+        return snapshot == null ? 0.0 : snapshot.getAvailableBalance(accountType);
+    }
+
+    /**
+     * Removes up to max pending holds deposited at or before the cutoff, oldest first.
+     */
+    public List<CheckHold> takeClearableHolds(long depositedBefore, int max) {
+        List<CheckHold> batch = new ArrayList<>();
+        synchronized (pendingHolds) {
+            CheckHold head;
+            while (batch.size() < max
+                    && (head = pendingHolds.peek()) != null
+                    && head.getDepositedAt() <= depositedBefore) {
+                batch.add(pendingHolds.poll());
+            }
+        }
+        return batch;
+    }
+
+    public int getPendingHoldCount() {
+        return pendingHolds.size();
+    }
+
+    /**
+     * Applies a batch of clearing decisions. Cleared holds release their funds;
+     * rejected holds are released and the check amount is reversed from the ledger.
+     */
+    public void settleHolds(List<CheckHold> cleared, List<CheckHold> rejected) {
+        for (CheckHold hold : cleared) {
+            snapshots.computeIfPresent(hold.getUserId(), (id, current) ->
+                current.withHoldChange(hold.getAccountType(), 0.0, -hold.getAmount(), null));
+        }
+        for (CheckHold hold : rejected) {
+            String type = "Returned Check from " + hold.getAccountType();
+            AccountSnapshot next = snapshots.computeIfPresent(hold.getUserId(), (id, current) -> {
+                String entry = formatTransaction(type, hold.getAmount());
+                appendTransaction(id, entry);
+                return current.withHoldChange(hold.getAccountType(), -hold.getAmount(), -hold.getAmount(), entry);
+            });
+            if (next != null) {
+                publishBalance(next, hold.getAccountType());
+                publishTransaction(hold.getUserId(), type, hold.getAmount(), next.getVersion());
+            }
         }
     }
 
     public void logTransaction(String userId, String type, double amount) {
-        transactions.computeIfAbsent(userId, k -> new ArrayList<>())
-            .add(String.format("%s - %s: %.2f",
-                LocalDateTime.now().format(formatter),
-                type,
-                amount));
+        String entry = formatTransaction(type, amount);
+        AccountSnapshot updated = snapshots.computeIfPresent(userId, (id, current) -> {
+            appendTransaction(id, entry);
+            return current.withTransaction(entry);
+        });
+        if (updated == null) {
+            appendTransaction(userId, entry);
+        }
+        publishTransaction(userId, type, amount, updated == null ? 0L : updated.getVersion());
+    }
+
+    private String formatTransaction(String type, double amount) {
+        return String.format("%s - %s: %.2f",
+            LocalDateTime.now().format(formatter),
+            type,
+            amount);
+    }
+
+    private void appendTransaction(String userId, String entry) {
+        List<String> history = transactionLog(userId);
+        synchronized (history) {
+            history.add(entry);
+        }
+    }
+
+    private void appendTransactions(String userId, List<String> entries) {
+        List<String> history = transactionLog(userId);
+        synchronized (history) {
+            history.addAll(entries);
+        }
+    }
+
+    // Events are published only after the version they describe is visible to getSnapshot
+    private void publishBalance(AccountSnapshot snapshot, String accountType) {
+        changeEvents.publish(ChangeEvent.Type.BALANCE_UPDATED, snapshot.getUserId(), accountType, null,
+            snapshot.getBalance(accountType), snapshot.getVersion());
+    }
+
+    private void publishTransaction(String userId, String type, double amount, long version) {
+        changeEvents.publish(ChangeEvent.Type.TRANSACTION_LOGGED, userId, null, type, amount, version);
+    }
+
+    // Log lists are tracked by the audit log when created and appended to while synchronized
+    private List<String> transactionLog(String userId) {
+        return transactions.computeIfAbsent(userId, k -> {
+            List<String> log = new ArrayList<>();
+            auditLog.track(transactionLogId(k), log);
+            return log;
+        });
+    }
+
+    public static String transactionLogId(String userId) {
+        return userId + "/transactions";
+    }
+
+    public static String pinActivityLogId(String userId) {
+        return userId + "/pin-activity";
     }
 
     public void logPINActivity(String userId, String activity) {
-        pinActivities.computeIfAbsent(userId, k -> new ArrayList<>())
-            .add(String.format("%s - %s",
-                LocalDateTime.now().format(formatter),
-                activity));
+        List<String> log = pinActivities.computeIfAbsent(userId, k -> {
+            List<String> created = new ArrayList<>();
+            auditLog.track(pinActivityLogId(k), created);
+            return created;
+        });
+        String entry = String.format("%s - %s",
+            LocalDateTime.now().format(formatter),
+            activity);
+        synchronized (log) {
+            log.add(entry);
+        }
+    }
+
+    public void logPINActivity(String userId, String terminalId, PinEvent event) {
+        logPINActivity(userId, event.getDescription());
+        pinAuditStore.append(userId, terminalId, event);
+    }
+
+    public PinAuditStore getPinAuditStore() {
+        return pinAuditStore;
+    }
+
+    public ChangeEventRing getChangeEvents() {
+        return changeEvents;
+    }
+
+    public TamperEvidentLog getAuditLog() {
+        return auditLog;
     }
 
     public List<String> getTransactionHistory(String userId) {
-        return new ArrayList<>(transactions.getOrDefault(userId, new ArrayList<>()));
+        List<String> history = transactions.get(userId);
+        if (history == null) {
+            return new ArrayList<>();
+        }
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
     }
 
     public List<String> getPINActivityHistory(String userId) {
-        return new ArrayList<>(pinActivities.getOrDefault(userId, new ArrayList<>()));
+        List<String> log = pinActivities.get(userId);
+        if (log == null) {
+            return new ArrayList<>();
+        }
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
     }
 
     public boolean userExists(String userId) {
@@ -76,12 +357,12 @@ public class InMemoryDatabase {
         Map<String, Double> user001Accounts = new HashMap<>();
         user001Accounts.put("SAVINGS", 1000.0);
         user001Accounts.put("CHECKING", 500.0);
-        accounts.put("USER001", user001Accounts);
+        snapshots.put("USER001", AccountSnapshot.initial("USER001", user001Accounts));
 
         Map<String, Double> user002Accounts = new HashMap<>();
         user002Accounts.put("SAVINGS", 2000.0);
         user002Accounts.put("CHECKING", 1000.0);
-        accounts.put("USER002", user002Accounts);
+        snapshots.put("USER002", AccountSnapshot.initial("USER002", user002Accounts));
     }
 
     private String hashPIN(String pin) {
@@ -0,0 +1,170 @@
+package com.atm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only columnar store for PIN and authentication events.
+ * Rows are kept in fixed-size blocks of primitive columns (timestamp, user,
+ * terminal, event code). Each block records its min/max timestamp so time
+ * range queries skip whole blocks, and blocks that fall entirely inside the
+ * range are scanned on the event code column alone.
+ * Appends are serialized; queries never take the append lock.
+ */
+public class PinAuditStore {
+    static final int BLOCK_SHIFT = 12;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final Dictionary users = new Dictionary();
+    private final Dictionary terminals = new Dictionary();
+
+    private volatile Block[] blocks = new Block[16];
+    private volatile int size;
+
+    private static final class Block {
+        final long[] timestamps = new long[BLOCK_SIZE];
+        final int[] users = new int[BLOCK_SIZE];
+        final int[] terminals = new int[BLOCK_SIZE];
+        final byte[] codes = new byte[BLOCK_SIZE];
+        volatile long minTimestamp = Long.MAX_VALUE;
+        volatile long maxTimestamp = Long.MIN_VALUE;
+    }
+
+    /**
+     * Dictionary encoding for user and terminal ids. Names live in an array that
+     * is only ever replaced by a larger copy, so readers can resolve any id
+     * referenced by a published row without taking the append lock.
+     */
+    private static final class Dictionary {
+        final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        volatile String[] names = new String[16];
+        int count;
+
+        int intern(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = count++;
+                String[] current = names;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                current[id] = name;
+                names = current;
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    public void append(String userId, String terminalId, PinEvent event) {
+        append(System.currentTimeMillis(), userId, terminalId, event);
+    }
+
+    public synchronized void append(long timestamp, String userId, String terminalId, PinEvent event) {
+        int row = size;
+        int blockIndex = row >>> BLOCK_SHIFT;
+        Block[] current = blocks;
+        if (blockIndex == current.length) {
+            Block[] grown = new Block[current.length * 2];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            blocks = current = grown;
+        }
+        Block block = current[blockIndex];
+        if (block == null) {
+            block = new Block();
+            current[blockIndex] = block;
+        }
+
+        int offset = row & BLOCK_MASK;
+        block.timestamps[offset] = timestamp;
+        block.users[offset] = users.intern(userId);
+        block.terminals[offset] = terminals.intern(terminalId);
+        block.codes[offset] = event.code();
+        block.minTimestamp = Math.min(block.minTimestamp, timestamp);
+        block.maxTimestamp = Math.max(block.maxTimestamp, timestamp);
+
+        // Publishing the new size makes the row visible to readers
+        size = row + 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Counts events of the given type with fromMillis <= timestamp < toMillis.
+     */
+    public long count(PinEvent event, long fromMillis, long toMillis) {
+        int rows = size;
+        Block[] snapshot = blocks;
+        byte code = event.code();
+        long count = 0;
+        for (int b = 0, blockCount = blockCount(rows); b < blockCount; b++) {
+            Block block = snapshot[b];
+            int limit = rowsInBlock(rows, b);
+            if (block.maxTimestamp < fromMillis || block.minTimestamp >= toMillis) {
+                continue;
+            }
+            byte[] codes = block.codes;
+            if (block.minTimestamp >= fromMillis && block.maxTimestamp < toMillis) {
+                for (int i = 0; i < limit; i++) {
+                    count += codes[i] == code ? 1 : 0;
+                }
+            } else {
+                long[] timestamps = block.timestamps;
+                for (int i = 0; i < limit; i++) {
+                    long ts = timestamps[i];
+                    count += (codes[i] == code & ts >= fromMillis & ts < toMillis) ? 1 : 0;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts events of the given type per user with fromMillis <= timestamp < toMillis.
+     * Users without matching events are omitted.
+     */
+    public Map<String, Integer> countByUser(PinEvent event, long fromMillis, long toMillis) {
+        int rows = size;
+        Block[] snapshot = blocks;
+        byte code = event.code();
+        String[] userNames = users.names;
+        int[] perUser = new int[userNames.length];
+        for (int b = 0, blockCount = blockCount(rows); b < blockCount; b++) {
+            Block block = snapshot[b];
+            int limit = rowsInBlock(rows, b);
+            if (block.maxTimestamp < fromMillis || block.minTimestamp >= toMillis) {
+                continue;
+            }
+            byte[] codes = block.codes;
+            long[] timestamps = block.timestamps;
+            int[] users = block.users;
+            for (int i = 0; i < limit; i++) {
+                long ts = timestamps[i];
+                if (codes[i] == code & ts >= fromMillis & ts < toMillis) {
+                    perUser[users[i]]++;
+                }
+            }
+        }
+
+        Map<String, Integer> result = new HashMap<>();
+        for (int user = 0; user < perUser.length; user++) {
+            if (perUser[user] > 0) {
+                result.put(userNames[user], perUser[user]);
+            }
+        }
+        return result;
+    }
+
+    private static int blockCount(int rows) {
+        return (rows + BLOCK_MASK) >>> BLOCK_SHIFT;
+    }
+
+    private static int rowsInBlock(int rows, int blockIndex) {
+        return Math.min(BLOCK_SIZE, rows - (blockIndex << BLOCK_SHIFT));
+    }
+}
@@ -0,0 +1,26 @@
+package com.atm;
+
+/**
+ * PIN and authentication events recorded in the audit store
+ */
+public enum PinEvent {
+    AUTH_SUCCESS("Successful PIN authentication"),
+    AUTH_FAILURE("Failed PIN authentication attempt"),
+    CHANGE_SUCCESS("Successful PIN change"),
+    CHANGE_FAILED_WRONG_PIN("Failed PIN change - incorrect current PIN"),
+    CHANGE_FAILED_FORMAT("Failed PIN change - invalid format");
+
+    private final String description;
+
+    PinEvent(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public byte code() {
+        return (byte) ordinal();
+    }
+}
@@ -0,0 +1,31 @@
+package com.atm;
+
+/**
+ * A single balance change applied by a bulk posting run
+ */
+public class Posting {
+    private final String accountType;
+    private final double delta;
+    private final String transactionType;
+
+    public Posting(String accountType, double delta, String transactionType) {
+        this.accountType = accountType;
+        this.delta = delta;
+        this.transactionType = transactionType;
+    }
+
+    public String getAccountType() {
+        return accountType;
+    }
+
+    /**
+     * Signed change to the ledger balance
+     */
+    public double getDelta() {
+        return delta;
+    }
+
+    public String getTransactionType() {
+        return transactionType;
+    }
+}
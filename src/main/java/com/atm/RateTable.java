@@ -0,0 +1,52 @@
+package com.atm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interest rates and flat fees per account type, applied by BulkPostingEngine
+ */
+public class RateTable {
+    private final Map<String, Double> interestRates = new ConcurrentHashMap<>();
+    private final Map<String, Double> fees = new ConcurrentHashMap<>();
+
+    /**
+     * Sets the interest rate per posting period, e.g. 0.005 for 0.5%
+     */
+    public void setInterestRate(String accountType, double rate) {
+        interestRates.put(accountType, rate);
+    }
+
+    public void setFee(String accountType, double fee) {
+        fees.put(accountType, fee);
+    }
+
+    /**
+     * Computes the postings for one user's accounts. Interest is paid on positive
+     * available balances; fees are capped at the available balance so they never
+     * overdraw an account.
+     */
+    public List<Posting> postingsFor(AccountSnapshot snapshot) {
+        List<Posting> postings = new ArrayList<>(2);
+        for (String accountType : snapshot.getBalances().keySet()) {
+            double available = snapshot.getAvailableBalance(accountType);
+            double rate = interestRates.getOrDefault(accountType, 0.0);
+            double interest = available > 0 ? roundCents(available * rate) : 0.0;
+            if (interest > 0) {
+                postings.add(new Posting(accountType, interest, "Interest credit to " + accountType));
+                available += interest;
+            }
+            double fee = Math.min(fees.getOrDefault(accountType, 0.0), Math.max(available, 0.0));
+            if (fee > 0) {
+                postings.add(new Posting(accountType, -fee, "Monthly fee on " + accountType));
+            }
+        }
+        return postings;
+    }
+
+    private static double roundCents(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.atm;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free sliding window counter made of a fixed ring of time buckets.
+ * Each slot packs the bucket epoch (upper 24 bits) and its value (lower 40 bits)
+ * into a single long, so a bucket is rolled over and updated by one CAS.
+ * Reads and updates touch a fixed number of slots and never allocate.
+ */
+public class SlidingWindowCounter {
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (64 - VALUE_BITS)) - 1;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final AtomicLongArray slots;
+
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        if (bucketCount <= 0 || windowMillis < bucketCount) {
+            throw new IllegalArgumentException("Window must span at least one millisecond per bucket");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.bucketCount = bucketCount;
+        this.slots = new AtomicLongArray(bucketCount);
+    }
+
+    public long epochOf(long nowMillis) {
+        return (nowMillis / bucketMillis) & EPOCH_MASK;
+    }
+
+    /**
+     * Adds a non-negative delta to the bucket for the given epoch, resetting the
+     * slot first if it still holds an expired bucket.
+     */
+    public void add(long epoch, long delta) {
+        int index = (int) (epoch % bucketCount);
+        while (true) {
+            long slot = slots.get(index);
+            long value = epochOfSlot(slot) == epoch ? slot & VALUE_MASK : 0;
+            if (slots.compareAndSet(index, slot, pack(epoch, value + delta))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes back a delta previously added for the given epoch. Does nothing if
+     * the bucket has since been rolled over, as its contents already expired.
+     */
+    public void remove(long epoch, long delta) {
+        int index = (int) (epoch % bucketCount);
+        while (true) {
+            long slot = slots.get(index);
+            if (epochOfSlot(slot) != epoch) {
+                return;
+            }
+            long value = Math.max(0, (slot & VALUE_MASK) - delta);
+            if (slots.compareAndSet(index, slot, pack(epoch, value))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sums the buckets that fall inside the window ending at the given epoch.
+     */
+    public long sum(long epoch) {
+        long total = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long slot = slots.get(i);
+            long age = (epoch - epochOfSlot(slot)) & EPOCH_MASK;
+            if (age < bucketCount) {
+                total += slot & VALUE_MASK;
+            }
+        }
+        return total;
+    }
+
+    private static long epochOfSlot(long slot) {
+        return slot >>> VALUE_BITS;
+    }
+
+    private static long pack(long epoch, long value) {
+        return (epoch << VALUE_BITS) | (value & VALUE_MASK);
+    }
+}
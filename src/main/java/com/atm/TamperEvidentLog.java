@@ -0,0 +1,442 @@
+package com.atm;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash chains and Merkle checkpoints over append-only log lists.
+ * Writers only append to the tracked lists; sealing runs off the write path,
+ * extends each log's chain (hash of previous hash and entry) over the entries
+ * added since the last run, and records Merkle roots over that batch as
+ * checkpoints of at most MAX_CHECKPOINT_SIZE entries. Chain hashes and the
+ * interior nodes of each checkpoint tree are kept in packed byte arrays, so a
+ * proof reads one stored node per tree level. Tracked lists must be appended
+ * to while synchronized on the list.
+ */
+public class TamperEvidentLog {
+    static final int MAX_CHECKPOINT_SIZE = 1024;
+    private static final int HASH_SIZE = 32;
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final byte[] GENESIS = new byte[HASH_SIZE];
+    private static final byte NODE_PREFIX = 1;
+
+    private final Map<String, Chain> chains = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Chain hashes live in fixed-size chunks that are never moved, and only
+     * hashes below a checkpoint published under the chain lock are read, so
+     * readers need the lock only to look up checkpoints.
+     */
+    private static final class Chain {
+        final String logId;
+        final List<String> entries;
+        final List<Checkpoint> checkpoints = new ArrayList<>();
+        volatile byte[][] chunks = new byte[16][];
+        int sealed;
+
+        Chain(String logId, List<String> entries) {
+            this.logId = logId;
+            this.entries = entries;
+        }
+
+        void append(byte[] hash) {
+            int chunk = sealed >>> CHUNK_SHIFT;
+            byte[][] current = chunks;
+            if (chunk == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            if (current[chunk] == null) {
+                current[chunk] = new byte[HASH_SIZE << CHUNK_SHIFT];
+            }
+            chunks = current;
+            System.arraycopy(hash, 0, current[chunk], (sealed & CHUNK_MASK) * HASH_SIZE, HASH_SIZE);
+            sealed++;
+        }
+
+        byte[] hashAt(int index) {
+            byte[] hash = new byte[HASH_SIZE];
+            copyHash(index, hash, 0);
+            return hash;
+        }
+
+        void copyHash(int index, byte[] target, int offset) {
+            System.arraycopy(chunks[index >>> CHUNK_SHIFT], (index & CHUNK_MASK) * HASH_SIZE, target, offset, HASH_SIZE);
+        }
+    }
+
+    /**
+     * Merkle root over the chain hashes of entries fromIndex (inclusive) to toIndex (exclusive)
+     */
+    public static final class Checkpoint {
+        private final String logId;
+        private final int fromIndex;
+        private final int toIndex;
+        private final byte[] root;
+        // Tree levels above the leaves, lowest first, packed HASH_SIZE bytes per node
+        private final byte[] interior;
+
+        Checkpoint(String logId, int fromIndex, int toIndex, byte[] root, byte[] interior) {
+            this.logId = logId;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.root = root;
+            this.interior = interior;
+        }
+
+        public String getLogId() {
+            return logId;
+        }
+
+        public int getFromIndex() {
+            return fromIndex;
+        }
+
+        public int getToIndex() {
+            return toIndex;
+        }
+
+        public byte[] getRoot() {
+            return root.clone();
+        }
+    }
+
+    /**
+     * Evidence that one entry is covered by a checkpoint. The leaf is the chain
+     * hash of the previous hash and the entry; siblings lead from it to the root.
+     */
+    public static final class Proof {
+        private final int index;
+        private final byte[] previousHash;
+        private final List<byte[]> siblings;
+        private final Checkpoint checkpoint;
+
+        Proof(int index, byte[] previousHash, List<byte[]> siblings, Checkpoint checkpoint) {
+            this.index = index;
+            this.previousHash = previousHash;
+            this.siblings = siblings;
+            this.checkpoint = checkpoint;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Checkpoint getCheckpoint() {
+            return checkpoint;
+        }
+
+        /**
+         * Checks that the given entry text is the one this proof was issued for.
+         */
+        public boolean verify(String entry) {
+            MessageDigest digest = newDigest();
+            byte[] node = chainHash(digest, previousHash, entry);
+            int position = index - checkpoint.fromIndex;
+            for (byte[] sibling : siblings) {
+                node = (position & 1) == 0 ? nodeHash(digest, node, sibling) : nodeHash(digest, sibling, node);
+                position >>>= 1;
+            }
+            return Arrays.equals(node, checkpoint.root);
+        }
+    }
+
+    public static final class VerificationReport {
+        private final int logsChecked;
+        private final long entriesChecked;
+        private final List<String> failures;
+
+        VerificationReport(int logsChecked, long entriesChecked, List<String> failures) {
+            this.logsChecked = logsChecked;
+            this.entriesChecked = entriesChecked;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        public int getLogsChecked() {
+            return logsChecked;
+        }
+
+        public long getEntriesChecked() {
+            return entriesChecked;
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        public boolean isValid() {
+            return failures.isEmpty();
+        }
+    }
+
+    /**
+     * Starts tracking a log list. Entries already in the list are sealed on the next run.
+     */
+    public void track(String logId, List<String> entries) {
+        chains.putIfAbsent(logId, new Chain(logId, entries));
+    }
+
+    /**
+     * Extends every chain over its unsealed entries and checkpoints each new batch.
+     * Returns the number of entries sealed.
+     */
+    public long sealPending() {
+        MessageDigest digest = newDigest();
+        long sealed = 0;
+        for (Chain chain : chains.values()) {
+            sealed += seal(chain, digest);
+        }
+        return sealed;
+    }
+
+    private static int seal(Chain chain, MessageDigest digest) {
+        synchronized (chain) {
+            int from = chain.sealed;
+            List<String> batch;
+            synchronized (chain.entries) {
+                if (chain.entries.size() <= from) {
+                    return 0;
+                }
+                batch = new ArrayList<>(chain.entries.subList(from, chain.entries.size()));
+            }
+            byte[] previous = from == 0 ? GENESIS : chain.hashAt(from - 1);
+            for (int start = 0; start < batch.size(); start += MAX_CHECKPOINT_SIZE) {
+                int count = Math.min(MAX_CHECKPOINT_SIZE, batch.size() - start);
+                byte[] leaves = new byte[count * HASH_SIZE];
+                for (int i = 0; i < count; i++) {
+                    previous = chainHash(digest, previous, batch.get(start + i));
+                    System.arraycopy(previous, 0, leaves, i * HASH_SIZE, HASH_SIZE);
+                    chain.append(previous);
+                }
+                byte[] interior = interiorLevels(digest, leaves, count);
+                chain.checkpoints.add(new Checkpoint(chain.logId, from + start, from + start + count,
+                    rootOf(leaves, interior), interior));
+            }
+            return batch.size();
+        }
+    }
+
+    /**
+     * Recomputes every sealed chain and checkpoint and reports any log whose
+     * entries were altered, reordered or dropped. Checkpoint segments are
+     * verified in parallel, since each one starts from a stored chain hash, and
+     * each copies only its own entries while holding the log's lock.
+     */
+    public VerificationReport verify() {
+        List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        List<Segment> segments = new ArrayList<>();
+        for (Chain chain : chains.values()) {
+            segments.addAll(segmentsOf(chain, failures));
+        }
+        long entries = segments.parallelStream()
+            .mapToLong(segment -> segment.verify(newDigest(), failures))
+            .sum();
+        return new VerificationReport(chains.size(), entries, new ArrayList<>(failures));
+    }
+
+    private static final class Segment {
+        final Chain chain;
+        final Checkpoint checkpoint;
+
+        Segment(Chain chain, Checkpoint checkpoint) {
+            this.chain = chain;
+            this.checkpoint = checkpoint;
+        }
+
+        long verify(MessageDigest digest, List<String> failures) {
+            int from = checkpoint.fromIndex;
+            int count = checkpoint.toIndex - from;
+            List<String> entries;
+            synchronized (chain.entries) {
+                int available = Math.min(checkpoint.toIndex, chain.entries.size());
+                entries = available <= from
+                    ? Collections.emptyList()
+                    : new ArrayList<>(chain.entries.subList(from, available));
+            }
+
+            byte[] current = from == 0 ? GENESIS : chain.hashAt(from - 1);
+            byte[] leaves = new byte[count * HASH_SIZE];
+            for (int i = 0; i < count; i++) {
+                chain.copyHash(from + i, leaves, i * HASH_SIZE);
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                current = chainHash(digest, current, entries.get(i));
+                if (!Arrays.equals(current, 0, HASH_SIZE, leaves, i * HASH_SIZE, (i + 1) * HASH_SIZE)) {
+                    failures.add(chain.logId + ": entry " + (from + i) + " does not match its chain hash");
+                    return i;
+                }
+            }
+            byte[] interior = interiorLevels(digest, leaves, count);
+            if (!Arrays.equals(interior, checkpoint.interior)
+                    || !Arrays.equals(rootOf(leaves, interior), checkpoint.root)) {
+                failures.add(chain.logId + ": checkpoint " + from + "-" + checkpoint.toIndex
+                    + " does not match its entries");
+            }
+            return entries.size();
+        }
+    }
+
+    private static List<Segment> segmentsOf(Chain chain, List<String> failures) {
+        int sealed;
+        List<Checkpoint> checkpoints;
+        synchronized (chain) {
+            sealed = chain.sealed;
+            checkpoints = new ArrayList<>(chain.checkpoints);
+        }
+        int size;
+        synchronized (chain.entries) {
+            size = chain.entries.size();
+        }
+        if (size < sealed) {
+            failures.add(chain.logId + ": " + (sealed - size) + " sealed entries missing");
+        }
+
+        List<Segment> segments = new ArrayList<>(checkpoints.size());
+        for (Checkpoint checkpoint : checkpoints) {
+            if (size <= checkpoint.fromIndex) {
+                break;
+            }
+            segments.add(new Segment(chain, checkpoint));
+        }
+        return segments;
+    }
+
+    /**
+     * Builds a proof for a sealed entry, or returns null if the entry is not sealed yet.
+     * Reads one stored node per tree level; nothing is rehashed.
+     */
+    public Proof prove(String logId, int index) {
+        Chain chain = chains.get(logId);
+        if (chain == null || index < 0) {
+            return null;
+        }
+        synchronized (chain) {
+            if (index >= chain.sealed) {
+                return null;
+            }
+            Checkpoint checkpoint = checkpointFor(chain.checkpoints, index);
+            int width = checkpoint.toIndex - checkpoint.fromIndex;
+            int position = index - checkpoint.fromIndex;
+            List<byte[]> siblings = new ArrayList<>();
+            if (width > 1) {
+                siblings.add(chain.hashAt(checkpoint.fromIndex + Math.min(position ^ 1, width - 1)));
+            }
+            int levelOffset = 0;
+            for (width = (width + 1) / 2, position >>>= 1; width > 1; width = (width + 1) / 2, position >>>= 1) {
+                int sibling = levelOffset + Math.min(position ^ 1, width - 1) * HASH_SIZE;
+                siblings.add(Arrays.copyOfRange(checkpoint.interior, sibling, sibling + HASH_SIZE));
+                levelOffset += width * HASH_SIZE;
+            }
+            byte[] previous = index == 0 ? GENESIS : chain.hashAt(index - 1);
+            return new Proof(index, previous, siblings, checkpoint);
+        }
+    }
+
+    // Checkpoints are contiguous and ordered by index
+    private static Checkpoint checkpointFor(List<Checkpoint> checkpoints, int index) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (checkpoints.get(mid).fromIndex <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return checkpoints.get(low);
+    }
+
+    public List<Checkpoint> getCheckpoints(String logId) {
+        Chain chain = chains.get(logId);
+        if (chain == null) {
+            return Collections.emptyList();
+        }
+        synchronized (chain) {
+            return new ArrayList<>(chain.checkpoints);
+        }
+    }
+
+    public synchronized void start(long periodMillis) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-log-sealer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sealPending, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Hashes the packed leaves up to the root and returns every level above the
+     * leaves, lowest first. An odd node at the end of a level is paired with itself.
+     */
+    private static byte[] interiorLevels(MessageDigest digest, byte[] leaves, int count) {
+        int nodes = 0;
+        for (int width = count; width > 1; width = (width + 1) / 2) {
+            nodes += (width + 1) / 2;
+        }
+        byte[] interior = new byte[nodes * HASH_SIZE];
+        byte[] level = leaves;
+        int levelOffset = 0;
+        int out = 0;
+        for (int width = count; width > 1; width = (width + 1) / 2) {
+            for (int i = 0; i < width; i += 2) {
+                int left = levelOffset + i * HASH_SIZE;
+                int right = i + 1 < width ? left + HASH_SIZE : left;
+                digest.update(NODE_PREFIX);
+                digest.update(level, left, HASH_SIZE);
+                digest.update(level, right, HASH_SIZE);
+                System.arraycopy(digest.digest(), 0, interior, out + (i / 2) * HASH_SIZE, HASH_SIZE);
+            }
+            level = interior;
+            levelOffset = out;
+            out += ((width + 1) / 2) * HASH_SIZE;
+        }
+        return interior;
+    }
+
+    private static byte[] rootOf(byte[] leaves, byte[] interior) {
+        byte[] level = interior.length == 0 ? leaves : interior;
+        return Arrays.copyOfRange(level, level.length - HASH_SIZE, level.length);
+    }
+
+    private static byte[] chainHash(MessageDigest digest, byte[] previous, String entry) {
+        digest.update(previous);
+        return digest.digest(entry.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] nodeHash(MessageDigest digest, byte[] left, byte[] right) {
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        return digest.digest(right);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.atm;
+
+/**
+ * Outcome of a mutating ATM operation, returned again for retried requests
+ */
+public class TransactionResult {
+    public enum Status {
+        COMPLETED,
+        REJECTED,
+        FAILED
+    }
+
+    private final Status status;
+    private final String confirmationCode;
+    private final double newBalance;
+
+    private TransactionResult(Status status, String confirmationCode, double newBalance) {
+        this.status = status;
+        this.confirmationCode = confirmationCode;
+        this.newBalance = newBalance;
+    }
+
+    public static TransactionResult completed(String confirmationCode, double newBalance) {
+        return new TransactionResult(Status.COMPLETED, confirmationCode, newBalance);
+    }
+
+    public static TransactionResult rejected() {
+        return new TransactionResult(Status.REJECTED, null, 0.0);
+    }
+
+    public static TransactionResult failed() {
+        return new TransactionResult(Status.FAILED, null, 0.0);
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isCompleted() {
+        return status == Status.COMPLETED;
+    }
+
+    /**
+     * Failed operations did not change anything and may be executed again
+     */
+    public boolean isRetryable() {
+        return status == Status.FAILED;
+    }
+
+    public String getConfirmationCode() {
+        return confirmationCode;
+    }
+
+    /**
+     * Balance of the debited or credited account after the operation
+     */
+    public double getNewBalance() {
+        return newBalance;
+    }
+}
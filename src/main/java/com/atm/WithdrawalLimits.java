@@ -0,0 +1,134 @@
+package com.atm;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user daily withdrawal amount and hourly transaction count limits.
+ * Limits are configured per account type and tracked with sliding window
+ * counters, so every check is constant time and allocation-free once a
+ * user's account has been seen.
+ */
+public class WithdrawalLimits {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int DAY_BUCKETS = 24;
+    private static final int HOUR_BUCKETS = 12;
+
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Usage>> usage = new ConcurrentHashMap<>();
+    private volatile Policy defaultPolicy;
+
+    public static final class Policy {
+        private final long maxDailyCents;
+        private final long maxHourlyCount;
+
+        public Policy(double maxDailyAmount, int maxHourlyCount) {
+            this.maxDailyCents = toCents(maxDailyAmount);
+            this.maxHourlyCount = maxHourlyCount;
+        }
+
+        public double getMaxDailyAmount() {
+            return maxDailyCents / 100.0;
+        }
+
+        public long getMaxHourlyCount() {
+            return maxHourlyCount;
+        }
+    }
+
+    private static final class Usage {
+        final SlidingWindowCounter dailyAmount = new SlidingWindowCounter(DAY_MILLIS, DAY_BUCKETS);
+        final SlidingWindowCounter hourlyCount = new SlidingWindowCounter(HOUR_MILLIS, HOUR_BUCKETS);
+    }
+
+    public WithdrawalLimits() {
+        defaultPolicy = new Policy(1000.0, 10);
+        policies.put("SAVINGS", new Policy(2000.0, 10));
+        policies.put("CHECKING", new Policy(3000.0, 20));
+    }
+
+    public void setPolicy(String accountType, double maxDailyAmount, int maxHourlyCount) {
+        policies.put(accountType, new Policy(maxDailyAmount, maxHourlyCount));
+    }
+
+    public void setDefaultPolicy(double maxDailyAmount, int maxHourlyCount) {
+        defaultPolicy = new Policy(maxDailyAmount, maxHourlyCount);
+    }
+
+    public Policy getPolicy(String accountType) {
+        return policies.getOrDefault(accountType, defaultPolicy);
+    }
+
+    public boolean allows(String userId, String accountType, double amount) {
+        return allows(userId, accountType, amount, System.currentTimeMillis());
+    }
+
+    /**
+     * Checks whether a withdrawal would stay within limits without recording it.
+     */
+    public boolean allows(String userId, String accountType, double amount, long nowMillis) {
+        Policy policy = getPolicy(accountType);
+        Usage current = usageFor(userId, accountType);
+        long dayEpoch = current.dailyAmount.epochOf(nowMillis);
+        long hourEpoch = current.hourlyCount.epochOf(nowMillis);
+        return current.dailyAmount.sum(dayEpoch) + toCents(amount) <= policy.maxDailyCents
+            && current.hourlyCount.sum(hourEpoch) + 1 <= policy.maxHourlyCount;
+    }
+
+    public boolean tryRecord(String userId, String accountType, double amount) {
+        return tryRecord(userId, accountType, amount, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a withdrawal if it stays within limits. The amount is reserved
+     * first and taken back if either window overflows, so concurrent sessions
+     * can never jointly exceed a limit.
+     */
+    public boolean tryRecord(String userId, String accountType, double amount, long nowMillis) {
+        Policy policy = getPolicy(accountType);
+        Usage current = usageFor(userId, accountType);
+        long cents = toCents(amount);
+        long dayEpoch = current.dailyAmount.epochOf(nowMillis);
+        long hourEpoch = current.hourlyCount.epochOf(nowMillis);
+
+        current.dailyAmount.add(dayEpoch, cents);
+        current.hourlyCount.add(hourEpoch, 1);
+        if (current.dailyAmount.sum(dayEpoch) > policy.maxDailyCents
+                || current.hourlyCount.sum(hourEpoch) > policy.maxHourlyCount) {
+            current.dailyAmount.remove(dayEpoch, cents);
+            current.hourlyCount.remove(hourEpoch, 1);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Takes back a withdrawal recorded by tryRecord that was not carried out,
+     * such as one rejected for insufficient funds. recordedAtMillis must be the
+     * time passed to tryRecord, so the amount comes out of the buckets it was
+     * charged to even if a bucket boundary has passed since.
+     */
+    public void release(String userId, String accountType, double amount, long recordedAtMillis) {
+        Usage current = usageFor(userId, accountType);
+        current.dailyAmount.remove(current.dailyAmount.epochOf(recordedAtMillis), toCents(amount));
+        current.hourlyCount.remove(current.hourlyCount.epochOf(recordedAtMillis), 1);
+    }
+
+    private Usage usageFor(String userId, String accountType) {
+        Map<String, Usage> accounts = usage.get(userId);
+        if (accounts == null) {
+            accounts = usage.computeIfAbsent(userId, k -> new ConcurrentHashMap<>());
+        }
+        Usage current = accounts.get(accountType);
+        if (current == null) {
+            current = accounts.computeIfAbsent(accountType, k -> new Usage());
+        }
+        return current;
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
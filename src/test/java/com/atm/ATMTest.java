@@ -2,6 +2,7 @@ package com.atm;
 
 import org.junit.Before;
 import org.junit.Test;
+import java.util.List;
 import static org.junit.Assert.*;
 
 public class ATMTest {
@@ -11,6 +12,7 @@ public class ATMTest {
     public void setUp() {
         // Initialize ATM with memory-only storage for testing
         atm = new ATM("1234"); // Pass initial PIN directly
+        DatabaseManager.useWithdrawalLimits(new WithdrawalLimits()); // Limits are shared across tests
     }
 
     @Test
@@ -136,4 +138,151 @@ public class ATMTest {
         assertTrue("PIN activity log should contain at least 3 entries",
             atm.getPINActivityHistory().size() >= 3);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPINEventsRecordedInAuditStore() {
+        PinAuditStore store = new DatabaseManager().getPinAuditStore();
+        long before = store.count(PinEvent.AUTH_FAILURE, 0L, Long.MAX_VALUE);
+
+        atm.authenticateWithPIN("9999"); // Wrong PIN
+
+        assertEquals("Failed authentication should be recorded in the audit store",
+            before + 1,
+            store.count(PinEvent.AUTH_FAILURE, 0L, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testTransferPublishesSingleSnapshot() {
+        DatabaseManager dbManager = new DatabaseManager();
+        AccountSnapshot before = dbManager.getSnapshot("USER001");
+        double savingsBefore = before.getBalance("SAVINGS");
+
+        atm.performTransfer("USER001", "SAVINGS", "USER001", "CHECKING", 10.0);
+
+        AccountSnapshot after = dbManager.getSnapshot("USER001");
+        assertEquals("Transfer should produce exactly one new version",
+            before.getVersion() + 1, after.getVersion());
+        assertEquals("Snapshot should show both sides of the transfer",
+            before.getBalance("SAVINGS") + before.getBalance("CHECKING"),
+            after.getBalance("SAVINGS") + after.getBalance("CHECKING"),
+            0.01);
+        List<String> recent = after.getRecentTransactions();
+        assertTrue("Snapshot should include the transfer in recent history",
+            recent.get(recent.size() - 1).contains("Transfer from SAVINGS to CHECKING"));
+        assertEquals("Earlier snapshot should be unchanged",
+            savingsBefore, before.getBalance("SAVINGS"), 0.0);
+    }
+
+    @Test
+    public void testTransferChargesSourceUserLimits() {
+        WithdrawalLimits limits = new WithdrawalLimits();
+        limits.setPolicy("SAVINGS", 50.0, 10);
+        DatabaseManager.useWithdrawalLimits(limits);
+        double sourceInitial = atm.getBalance("USER002", "SAVINGS");
+
+        atm.performTransfer("USER002", "SAVINGS", "USER001", "SAVINGS", 40.0);
+
+        assertEquals("Source account should be debited",
+            sourceInitial - 40.0, atm.getBalance("USER002", "SAVINGS"), 0.01);
+        assertFalse("Source user's limit should be charged",
+            limits.allows("USER002", "SAVINGS", 20.0));
+        assertTrue("Current user's limit should be untouched",
+            limits.allows("USER001", "SAVINGS", 50.0));
+    }
+
+    @Test
+    public void testRejectedTransferReleasesLimitsAndCreditsNothing() {
+        WithdrawalLimits limits = new WithdrawalLimits();
+        DatabaseManager.useWithdrawalLimits(limits);
+        double sourceInitial = atm.getBalance("USER001", "SAVINGS");
+        double destInitial = atm.getBalance("USER002", "SAVINGS");
+
+        TransactionResult result = atm.performTransfer("USER001", "SAVINGS", "USER002", "SAVINGS",
+            sourceInitial + 1.0, null);
+
+        assertEquals("Transfer should be rejected", TransactionResult.Status.REJECTED, result.getStatus());
+        assertEquals("Recipient should not be credited",
+            destInitial, atm.getBalance("USER002", "SAVINGS"), 0.01);
+        assertTrue("Rejected transfer should not count against the limits",
+            limits.allows("USER001", "SAVINGS", limits.getPolicy("SAVINGS").getMaxDailyAmount()));
+    }
+
+    @Test
+    public void testTransferToUnknownRecipientIsRejected() {
+        WithdrawalLimits limits = new WithdrawalLimits();
+        DatabaseManager.useWithdrawalLimits(limits);
+        double sourceInitial = atm.getBalance("USER001", "SAVINGS");
+
+        TransactionResult result = atm.performTransfer("USER001", "SAVINGS", "NOBODY", "SAVINGS", 100.0, null);
+
+        assertEquals("Transfer should be rejected", TransactionResult.Status.REJECTED, result.getStatus());
+        assertNull("No confirmation code should be issued", result.getConfirmationCode());
+        assertEquals("Source should not be debited",
+            sourceInitial, atm.getBalance("USER001", "SAVINGS"), 0.01);
+        assertTrue("Rejected transfer should not count against the limits",
+            limits.allows("USER001", "SAVINGS", limits.getPolicy("SAVINGS").getMaxDailyAmount()));
+    }
+
+    @Test
+    public void testRetriedWithdrawalIsAppliedOnce() {
+        String key = "withdrawal-" + System.nanoTime();
+        double initialBalance = atm.getBalance("USER001", "CHECKING");
+
+        TransactionResult first = atm.performWithdrawal("CHECKING", 10.0, key);
+        TransactionResult retry = atm.performWithdrawal("CHECKING", 10.0, key);
+
+        assertTrue("Withdrawal should complete", first.isCompleted());
+        assertEquals("Retry should return the original confirmation code",
+            first.getConfirmationCode(), retry.getConfirmationCode());
+        assertEquals("Balance should only be debited once",
+            initialBalance - 10.0,
+            atm.getBalance("USER001", "CHECKING"),
+            0.01);
+    }
+
+    @Test
+    public void testRetriedCardlessDepositIsAppliedOnce() {
+        String key = "cardless-" + System.nanoTime();
+        double initialBalance = atm.getBalance("USER001", "SAVINGS");
+
+        TransactionResult first = atm.processCardlessTransaction("deposit", "SAVINGS", 25.0, "123456", key);
+        TransactionResult retry = atm.processCardlessTransaction("deposit", "SAVINGS", 25.0, "123456", key);
+
+        assertSame("Retry should return the original result", first, retry);
+        assertEquals("Balance should only be credited once",
+            initialBalance + 25.0,
+            atm.getBalance("USER001", "SAVINGS"),
+            0.01);
+    }
+
+    @Test
+    public void testRetriedCheckDepositIsHeldOnce() {
+        String key = "check-" + System.nanoTime();
+        double initialBalance = atm.getBalance("USER001", "CHECKING");
+
+        TransactionResult first = atm.depositCheck("CHECKING", 75.0, key);
+        TransactionResult retry = atm.depositCheck("CHECKING", 75.0, key);
+
+        assertSame("Retry should return the original result", first, retry);
+        assertEquals("Ledger should only be credited once",
+            initialBalance + 75.0, atm.getBalance("USER001", "CHECKING"), 0.01);
+        assertEquals("Check should only be held once",
+            initialBalance, atm.getAvailableBalance("USER001", "CHECKING"), 0.01);
+    }
+
+    @Test
+    public void testKeyReusedForDifferentAmountIsRefused() {
+        String key = "cash-" + System.nanoTime();
+        double initialBalance = atm.getBalance("USER001", "SAVINGS");
+        atm.depositCash("SAVINGS", 20.0, key);
+
+        try {
+            atm.depositCash("SAVINGS", 200.0, key);
+            fail("Reusing a key for a different amount should be refused");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+        assertEquals("Only the first deposit should be applied",
+            initialBalance + 20.0, atm.getBalance("USER001", "SAVINGS"), 0.01);
+    }
+}
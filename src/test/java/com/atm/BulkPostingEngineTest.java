@@ -0,0 +1,61 @@
+package com.atm;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+
+public class BulkPostingEngineTest {
+    private InMemoryDatabase db;
+    private RateTable rates;
+
+    @Before
+    public void setUp() {
+        db = new InMemoryDatabase();
+        rates = new RateTable();
+        rates.setInterestRate("SAVINGS", 0.01);
+        rates.setFee("CHECKING", 5.0);
+    }
+
+    @Test
+    public void testInterestAndFeesArePosted() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        BulkPostingEngine engine = new BulkPostingEngine(db, pool, 1);
+        BulkPostingEngine.Report report;
+        try {
+            report = engine.run(rates);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals("Every user should be processed", 2, report.getUsers());
+        assertEquals("Each user should get one interest and one fee posting", 4, report.getPostings());
+        assertEquals("Interest should be 1% of savings", 30.0, report.getInterestPosted(), 0.01);
+        assertEquals("Fees should be charged on both checking accounts", 10.0, report.getFeesPosted(), 0.01);
+        assertEquals(1010.0, db.getAccounts("USER001").get("SAVINGS"), 0.01);
+        assertEquals(495.0, db.getAccounts("USER001").get("CHECKING"), 0.01);
+        assertEquals("Run should be complete", 1.0, engine.getProgress(), 0.0);
+    }
+
+    @Test
+    public void testPostingsAreLoggedInOneVersion() {
+        long version = db.getSnapshot("USER001").getVersion();
+
+        new BulkPostingEngine(db).run(rates);
+
+        AccountSnapshot snapshot = db.getSnapshot("USER001");
+        assertEquals("Postings should be applied as one version", version + 1, snapshot.getVersion());
+        assertEquals("Both postings should be in recent history", 2, snapshot.getRecentTransactions().size());
+        assertEquals("Both postings should be in the transaction log", 2, db.getTransactionHistory("USER001").size());
+    }
+
+    @Test
+    public void testFeeNeverOverdrawsAccount() {
+        db.updateBalance("USER001", "CHECKING", 3.0);
+
+        new BulkPostingEngine(db).run(rates);
+
+        assertEquals("Fee should be capped at the available balance",
+            0.0, db.getAccounts("USER001").get("CHECKING"), 0.01);
+    }
+}
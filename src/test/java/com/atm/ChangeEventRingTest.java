@@ -0,0 +1,135 @@
+package com.atm;
+
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.*;
+
+public class ChangeEventRingTest {
+
+    private static class RecordingHandler implements ChangeEventRing.Handler {
+        final List<Long> sequences = new ArrayList<>();
+        final List<ChangeEvent.Type> types = new ArrayList<>();
+        long missed;
+
+        @Override
+        public void onEvent(ChangeEvent event) {
+            sequences.add(event.getSequence());
+            types.add(event.getType());
+        }
+
+        @Override
+        public void onMissed(long count) {
+            missed += count;
+        }
+    }
+
+    @Test
+    public void testSubscribersConsumeIndependently() {
+        ChangeEventRing ring = new ChangeEventRing(8);
+        ChangeEventRing.Subscriber fast = ring.subscribe();
+        ChangeEventRing.Subscriber slow = ring.subscribe();
+        for (int i = 0; i < 5; i++) {
+            ring.publish(ChangeEvent.Type.BALANCE_UPDATED, "USER001", "SAVINGS", null, i);
+        }
+
+        RecordingHandler fastHandler = new RecordingHandler();
+        assertEquals("Fast subscriber should read all events", 5, fast.poll(fastHandler, 100));
+        RecordingHandler slowHandler = new RecordingHandler();
+        assertEquals("Slow subscriber should read in batches", 2, slow.poll(slowHandler, 2));
+        assertEquals("Slow subscriber should report its lag", 3, slow.getLag());
+        assertEquals("Fast subscriber should be caught up", 0, fast.getLag());
+        assertEquals("Slow subscriber should resume where it stopped", 3, slow.poll(slowHandler, 100));
+        assertEquals(fastHandler.sequences, slowHandler.sequences);
+    }
+
+    @Test
+    public void testLappedSubscriberSkipsToOldestAvailable() {
+        ChangeEventRing ring = new ChangeEventRing(4);
+        ChangeEventRing.Subscriber subscriber = ring.subscribe();
+        for (int i = 0; i < 10; i++) {
+            ring.publish(ChangeEvent.Type.TRANSACTION_LOGGED, "USER001", null, "Deposit", i);
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals("Only a full ring of events should remain", 4, subscriber.poll(handler, 100));
+        assertEquals("Overwritten events should be reported as missed", 6, handler.missed);
+        assertEquals(Long.valueOf(6), handler.sequences.get(0));
+        assertEquals(6, subscriber.getMissedCount());
+    }
+
+    @Test
+    public void testDatabaseWritesArePublished() {
+        InMemoryDatabase db = new InMemoryDatabase();
+        ChangeEventRing.Subscriber subscriber = db.getChangeEvents().subscribe();
+
+        db.updateBalance("USER001", "SAVINGS", 900.0);
+        db.logTransaction("USER001", "Withdrawal from SAVINGS", 100.0);
+        db.updatePIN("USER001", "hash");
+
+        RecordingHandler handler = new RecordingHandler();
+        subscriber.poll(handler, 100);
+        assertEquals(List.of(ChangeEvent.Type.BALANCE_UPDATED,
+                             ChangeEvent.Type.TRANSACTION_LOGGED,
+                             ChangeEvent.Type.PIN_UPDATED),
+            handler.types);
+    }
+
+    @Test
+    public void testEventsFollowTheSnapshotTheyDescribe() throws Exception {
+        InMemoryDatabase db = new InMemoryDatabase();
+        ChangeEventRing.Subscriber subscriber = db.getChangeEvents().subscribe();
+        AtomicBoolean done = new AtomicBoolean();
+        List<String> stale = Collections.synchronizedList(new ArrayList<>());
+        Thread reader = new Thread(() -> {
+            ChangeEventRing.Handler handler = event -> {
+                if (db.getSnapshot(event.getUserId()).getVersion() < event.getVersion()) {
+                    stale.add("version " + event.getVersion() + " seen before its snapshot");
+                }
+            };
+            while (!done.get() || subscriber.getLag() > 0) {
+                subscriber.poll(handler, 64);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 5000; i++) {
+            db.applyBalanceChanges("USER001", Collections.singletonMap("SAVINGS", 1.0), "Deposit", 1.0);
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(Collections.emptyList(), stale);
+    }
+
+    @Test
+    public void testLappedSubscriberCatchesUpFromSnapshots() {
+        InMemoryDatabase db = new InMemoryDatabase();
+        ChangeEventRing.Subscriber subscriber = db.getChangeEvents().subscribe();
+        db.applyBalanceChanges("USER002", Collections.singletonMap("SAVINGS", 5.0), "Deposit", 5.0);
+        int capacity = db.getChangeEvents().getCapacity();
+        for (int i = 0; i < capacity; i++) {
+            db.applyBalanceChanges("USER001", Collections.singletonMap("SAVINGS", 1.0), null, 0.0);
+        }
+
+        Map<String, Long> seen = new HashMap<>();
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void onEvent(ChangeEvent event) {
+                seen.merge(event.getUserId(), event.getVersion(), Math::max);
+            }
+        };
+        while (subscriber.poll(handler, 1024) > 0) {
+            // drain
+        }
+
+        assertTrue("Subscriber should have been lapped", handler.missed > 0);
+        List<AccountSnapshot> changed = db.getSnapshotsChangedSince(seen);
+        assertEquals("Only the user whose events were lost should need catching up", 1, changed.size());
+        assertEquals("USER002", changed.get(0).getUserId());
+        assertEquals(2005.0, changed.get(0).getBalance("SAVINGS"), 0.01);
+    }
+}
@@ -0,0 +1,82 @@
+package com.atm;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+public class CheckClearingJobTest {
+    private InMemoryDatabase db;
+
+    @Before
+    public void setUp() {
+        db = new InMemoryDatabase();
+    }
+
+    @Test
+    public void testCheckDepositIsHeld() {
+        db.placeCheckHold("USER001", "SAVINGS", 250.0);
+
+        assertEquals("Ledger balance should include the check",
+            1250.0, db.getAccounts("USER001").get("SAVINGS"), 0.01);
+        assertEquals("Available balance should exclude the held check",
+            1000.0, db.getAvailableBalance("USER001", "SAVINGS"), 0.01);
+    }
+
+    @Test
+    public void testClearingReleasesAndRejectsHolds() {
+        db.placeCheckHold("USER001", "SAVINGS", 250.0);
+        db.placeCheckHold("USER002", "CHECKING", 400.0);
+        CheckClearingJob job = new CheckClearingJob(db, hold -> hold.getAmount() < 300.0, 0L, 1);
+
+        CheckClearingJob.Result result = job.runOnce();
+
+        assertEquals("One check should clear", 1, result.getCleared());
+        assertEquals("One check should be rejected", 1, result.getRejected());
+        assertEquals("Cleared check should be available",
+            1250.0, db.getAvailableBalance("USER001", "SAVINGS"), 0.01);
+        assertEquals("Rejected check should be reversed from the ledger",
+            1000.0, db.getAccounts("USER002").get("CHECKING"), 0.01);
+        assertEquals("Rejected check should no longer be held",
+            1000.0, db.getAvailableBalance("USER002", "CHECKING"), 0.01);
+        assertEquals("No holds should remain pending", 0, db.getPendingHoldCount());
+    }
+
+    @Test
+    public void testHoldsWithinHoldPeriodStayPending() {
+        db.placeCheckHold("USER001", "SAVINGS", 250.0);
+        CheckClearingJob job = new CheckClearingJob(db);
+
+        assertEquals("Recent check should not clear", 0, job.runOnce().getCleared());
+        assertEquals("Recent check should remain pending", 1, db.getPendingHoldCount());
+    }
+
+    @Test
+    public void testReversalIsNotLostToConcurrentDeposits() throws Exception {
+        int checks = 200;
+        for (int i = 0; i < checks; i++) {
+            db.placeCheckHold("USER001", "SAVINGS", 10.0);
+        }
+        CheckClearingJob job = new CheckClearingJob(db, hold -> false, 0L, 7);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            pool.execute(() -> {
+                for (int i = 0; i < checks; i++) {
+                    db.applyBalanceChanges("USER001", Collections.singletonMap("SAVINGS", 1.0), null, 0.0);
+                }
+            });
+            assertEquals("Every check should be rejected", checks, job.runOnce().getRejected());
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals("Every reversal and every deposit should be kept",
+            1000.0 + checks, db.getAccounts("USER001").get("SAVINGS"), 0.01);
+        assertEquals("Nothing should remain on hold",
+            0.0, db.getHeldAmount("USER001", "SAVINGS"), 0.01);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.atm;
+
+import org.junit.Test;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+public class IdempotencyIndexTest {
+
+    @Test
+    public void testDuplicateKeyReturnsOriginalResult() {
+        IdempotencyIndex index = new IdempotencyIndex();
+        AtomicInteger runs = new AtomicInteger();
+
+        TransactionResult first = index.execute("key-1", "op", () -> {
+            runs.incrementAndGet();
+            return TransactionResult.completed("ABCD1234", 100.0);
+        });
+        TransactionResult retry = index.execute("key-1", "op", () -> {
+            runs.incrementAndGet();
+            return TransactionResult.completed("ZZZZ9999", 50.0);
+        });
+
+        assertEquals("Operation should run once", 1, runs.get());
+        assertEquals("ABCD1234", retry.getConfirmationCode());
+        assertSame(first, retry);
+    }
+
+    @Test
+    public void testFailedResultsAreNotRemembered() {
+        IdempotencyIndex index = new IdempotencyIndex();
+
+        index.execute("key-1", "op", TransactionResult::failed);
+        TransactionResult retry = index.execute("key-1", "op", () -> TransactionResult.completed("ABCD1234", 0.0));
+
+        assertTrue("Retry after a failure should run again", retry.isCompleted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyReusedForDifferentRequestIsRefused() {
+        IdempotencyIndex index = new IdempotencyIndex();
+
+        index.execute("key-1", "withdrawal|SAVINGS|50.0", () -> TransactionResult.completed("ABCD1234", 0.0));
+        index.execute("key-1", "withdrawal|SAVINGS|500.0", () -> TransactionResult.completed("ZZZZ9999", 0.0));
+    }
+
+    @Test(timeout = 5000)
+    public void testRotationRightAfterInsertStillRunsTheOperation() {
+        // A bound of one forces a rotation between inserting a key and running it
+        IdempotencyIndex index = new IdempotencyIndex(TimeUnit.HOURS.toMillis(1), 1);
+        AtomicInteger runs = new AtomicInteger();
+
+        TransactionResult first = index.execute("key-1", "op", () -> {
+            runs.incrementAndGet();
+            return TransactionResult.completed("ABCD1234", 0.0);
+        });
+        TransactionResult retry = index.execute("key-1", "op", () -> {
+            runs.incrementAndGet();
+            return TransactionResult.completed("ZZZZ9999", 0.0);
+        });
+
+        assertTrue("Operation should run", first.isCompleted());
+        assertSame("Retry should return the original result", first, retry);
+        assertEquals("Operation should run once", 1, runs.get());
+    }
+
+    @Test
+    public void testSizeBoundRotatesEarlyInsteadOfRefusingKeys() {
+        IdempotencyIndex index = new IdempotencyIndex(TimeUnit.HOURS.toMillis(1), 10);
+
+        for (int i = 0; i < 100; i++) {
+            TransactionResult result = index.execute("key-" + i, "op",
+                () -> TransactionResult.completed("ABCD1234", 0.0));
+            assertTrue("New keys should never be turned away", result.isCompleted());
+        }
+
+        assertTrue("Index should hold at most two generations", index.size() <= 20);
+        assertTrue("Early rotations should be reported", index.getEarlyRotationCount() > 0);
+        assertTrue("Shortened retention should be visible",
+            index.getLastGenerationMillis() < TimeUnit.HOURS.toMillis(1));
+        AtomicInteger runs = new AtomicInteger();
+        index.execute("key-99", "op", () -> {
+            runs.incrementAndGet();
+            return TransactionResult.rejected();
+        });
+        assertEquals("Recent keys should still be remembered", 0, runs.get());
+    }
+
+    @Test
+    public void testRotationKeepsRunningOperations() throws Exception {
+        IdempotencyIndex index = new IdempotencyIndex(20, 100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Thread original = new Thread(() -> index.execute("slow", "op", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            awaitQuietly(release);
+            return TransactionResult.completed("ABCD1234", 0.0);
+        }));
+        original.start();
+        started.await();
+
+        // Two full windows would drop every key if running operations were not carried over
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(30);
+            index.execute("tick-" + i, "op", TransactionResult::rejected);
+        }
+        release.countDown();
+        TransactionResult retry = index.execute("slow", "op", () -> {
+            runs.incrementAndGet();
+            return TransactionResult.completed("ZZZZ9999", 0.0);
+        });
+        original.join();
+
+        assertEquals("Operation should run once across rotations", 1, runs.get());
+        assertEquals("ABCD1234", retry.getConfirmationCode());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.atm;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.Map;
+import static org.junit.Assert.*;
+
+public class PinAuditStoreTest {
+    private PinAuditStore store;
+
+    @Before
+    public void setUp() {
+        store = new PinAuditStore();
+    }
+
+    @Test
+    public void testCountWithinTimeRange() {
+        store.append(1_000L, "USER001", "ATM-001", PinEvent.AUTH_FAILURE);
+        store.append(2_000L, "USER001", "ATM-001", PinEvent.AUTH_SUCCESS);
+        store.append(3_000L, "USER002", "ATM-002", PinEvent.AUTH_FAILURE);
+        store.append(9_000L, "USER002", "ATM-002", PinEvent.AUTH_FAILURE);
+
+        assertEquals("Should count failures inside the range only",
+            2, store.count(PinEvent.AUTH_FAILURE, 1_000L, 5_000L));
+        assertEquals("Should count all failures across the full range",
+            3, store.count(PinEvent.AUTH_FAILURE, 0L, Long.MAX_VALUE));
+        assertEquals("Should find nothing outside the stored range",
+            0, store.count(PinEvent.AUTH_FAILURE, 10_000L, 20_000L));
+    }
+
+    @Test
+    public void testCountAcrossBlocks() {
+        int rows = PinAuditStore.BLOCK_SIZE * 3 + 17;
+        for (int i = 0; i < rows; i++) {
+            store.append(i, "USER" + (i % 3), "ATM-001", i % 2 == 0 ? PinEvent.AUTH_FAILURE : PinEvent.AUTH_SUCCESS);
+        }
+
+        assertEquals("All rows should be stored", rows, store.size());
+        assertEquals("Half the rows should be failures",
+            (rows + 1) / 2, store.count(PinEvent.AUTH_FAILURE, 0L, rows));
+        assertEquals("Range spanning a block boundary should be counted exactly",
+            50, store.count(PinEvent.AUTH_FAILURE, PinAuditStore.BLOCK_SIZE - 50, PinAuditStore.BLOCK_SIZE + 50));
+    }
+
+    @Test
+    public void testCountByUser() {
+        store.append(1_000L, "USER001", "ATM-001", PinEvent.AUTH_FAILURE);
+        store.append(1_500L, "USER001", "ATM-002", PinEvent.AUTH_FAILURE);
+        store.append(2_000L, "USER002", "ATM-001", PinEvent.AUTH_SUCCESS);
+
+        Map<String, Integer> failures = store.countByUser(PinEvent.AUTH_FAILURE, 0L, 5_000L);
+        assertEquals("Only users with failures should be reported", 1, failures.size());
+        assertEquals("USER001 should have two failures", Integer.valueOf(2), failures.get("USER001"));
+    }
+}
@@ -0,0 +1,90 @@
+package com.atm;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+
+public class TamperEvidentLogTest {
+    private TamperEvidentLog log;
+    private List<String> entries;
+
+    @Before
+    public void setUp() {
+        log = new TamperEvidentLog();
+        entries = new ArrayList<>();
+        log.track("USER001/transactions", entries);
+        for (int i = 0; i < 5; i++) {
+            entries.add("Deposit " + i);
+        }
+        log.sealPending();
+        for (int i = 5; i < 8; i++) {
+            entries.add("Withdrawal " + i);
+        }
+        log.sealPending();
+    }
+
+    @Test
+    public void testSealedLogVerifies() {
+        TamperEvidentLog.VerificationReport report = log.verify();
+
+        assertTrue("Untouched log should verify", report.isValid());
+        assertEquals("All entries should be checked", 8, report.getEntriesChecked());
+        assertEquals("Each sealing run should add a checkpoint", 2, log.getCheckpoints("USER001/transactions").size());
+    }
+
+    @Test
+    public void testAlteredEntryIsDetected() {
+        entries.set(6, "Withdrawal 600");
+
+        TamperEvidentLog.VerificationReport report = log.verify();
+
+        assertFalse("Altered entry should fail verification", report.isValid());
+        assertTrue(report.getFailures().get(0).contains("entry 6"));
+    }
+
+    @Test
+    public void testDroppedEntryIsDetected() {
+        entries.remove(entries.size() - 1);
+
+        assertFalse("Dropped entry should fail verification", log.verify().isValid());
+    }
+
+    @Test
+    public void testProofForSingleEntry() {
+        for (int index = 0; index < entries.size(); index++) {
+            TamperEvidentLog.Proof proof = log.prove("USER001/transactions", index);
+            assertTrue("Proof should verify the original entry", proof.verify(entries.get(index)));
+            assertFalse("Proof should reject a different entry", proof.verify("Deposit 999"));
+        }
+        entries.add("Unsealed");
+        assertNull("Unsealed entries have no proof", log.prove("USER001/transactions", 8));
+    }
+
+    @Test
+    public void testLargeBatchIsSplitIntoCappedCheckpoints() {
+        int total = 8 + 2 * TamperEvidentLog.MAX_CHECKPOINT_SIZE + 37;
+        for (int i = 8; i < total; i++) {
+            entries.add("Transfer " + i);
+        }
+        log.sealPending();
+
+        List<TamperEvidentLog.Checkpoint> checkpoints = log.getCheckpoints("USER001/transactions");
+        assertEquals("Batch should be split at the checkpoint size", 5, checkpoints.size());
+        for (TamperEvidentLog.Checkpoint checkpoint : checkpoints) {
+            assertTrue(checkpoint.getToIndex() - checkpoint.getFromIndex() <= TamperEvidentLog.MAX_CHECKPOINT_SIZE);
+        }
+        for (int index : new int[] {0, 8, 9, 1000, 1031, 1032, 2055, 2056, total - 1}) {
+            assertTrue("Proof should verify entry " + index,
+                log.prove("USER001/transactions", index).verify(entries.get(index)));
+        }
+
+        TamperEvidentLog.VerificationReport report = log.verify();
+        assertTrue("Untouched log should verify", report.isValid());
+        assertEquals("All entries should be checked", total, report.getEntriesChecked());
+
+        entries.set(1500, "Transfer 15000");
+        assertTrue(log.verify().getFailures().get(0).contains("entry 1500"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.atm;
+
+import org.junit.Before;
+import org.junit.Test;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+
+public class WithdrawalLimitsTest {
+    private static final long START = TimeUnit.DAYS.toMillis(20000);
+
+    private WithdrawalLimits limits;
+
+    @Before
+    public void setUp() {
+        limits = new WithdrawalLimits();
+        limits.setPolicy("SAVINGS", 500.0, 3);
+    }
+
+    @Test
+    public void testDailyAmountLimit() {
+        assertTrue("First withdrawal should be allowed",
+            limits.tryRecord("USER001", "SAVINGS", 300.0, START));
+        assertFalse("Withdrawal over the daily amount should be rejected",
+            limits.tryRecord("USER001", "SAVINGS", 300.0, START + 1000));
+        assertTrue("Withdrawal up to the daily amount should be allowed",
+            limits.tryRecord("USER001", "SAVINGS", 200.0, START + 2000));
+        assertTrue("Limit should reset once the day has passed",
+            limits.allows("USER001", "SAVINGS", 300.0, START + TimeUnit.HOURS.toMillis(25)));
+    }
+
+    @Test
+    public void testHourlyCountLimit() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue("Withdrawals within the hourly count should be allowed",
+                limits.tryRecord("USER001", "SAVINGS", 10.0, START + i));
+        }
+        assertFalse("Fourth withdrawal within the hour should be rejected",
+            limits.tryRecord("USER001", "SAVINGS", 10.0, START + 10));
+        assertTrue("Count should slide out after an hour",
+            limits.tryRecord("USER001", "SAVINGS", 10.0, START + TimeUnit.MINUTES.toMillis(65)));
+    }
+
+    @Test
+    public void testLimitsArePerUserAndAccountType() {
+        assertTrue(limits.tryRecord("USER001", "SAVINGS", 500.0, START));
+        assertFalse("SAVINGS limit should be exhausted",
+            limits.allows("USER001", "SAVINGS", 1.0, START));
+        assertTrue("CHECKING has its own policy",
+            limits.allows("USER001", "CHECKING", 500.0, START));
+        assertTrue("Other users are tracked separately",
+            limits.allows("USER002", "SAVINGS", 500.0, START));
+    }
+
+    @Test
+    public void testReleaseAfterBucketBoundaryLeavesLaterWithdrawals() {
+        long recordedAt = START + TimeUnit.MINUTES.toMillis(59);
+        assertTrue(limits.tryRecord("USER001", "SAVINGS", 100.0, recordedAt));
+        assertTrue(limits.tryRecord("USER001", "SAVINGS", 300.0, START + TimeUnit.MINUTES.toMillis(61)));
+
+        limits.release("USER001", "SAVINGS", 100.0, recordedAt);
+
+        assertFalse("The later withdrawal should still count once the first bucket expires",
+            limits.allows("USER001", "SAVINGS", 250.0, START + TimeUnit.MINUTES.toMillis(24 * 60 + 30)));
+    }
+}